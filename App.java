@@ -1,13 +1,37 @@
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.*;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Classe principal da aplicação Kanban.
@@ -16,43 +40,941 @@ import java.util.*;
 public class App {
 
     // Constantes da aplicação
-    static final int PORT = 8080; // Porta em que o servidor HTTP será executado
+    static final int PORT = parseIntSafe(config("porta", ""), 8080); // Porta em que o servidor HTTP será executado
     static final String CSV = "data_tasks.csv"; // Nome do arquivo CSV para persistência dos dados
-    static final int MAX = 5000; // Capacidade máxima de tarefas
+    static final String BIN = "data_tasks.bin"; // Snapshot binário (kanban.snapshot=bin), alternativa ao CSV
+    static final String LOG = "data_tasks.log"; // Log de mutações (append-only) aplicado sobre o snapshot
+    static final boolean SNAPSHOT_BINARIO = "bin".equalsIgnoreCase(config("snapshot", "csv")); // Formato do snapshot gravado
+    static final long LOG_COMPACTAR_BYTES = 4L << 20; // Tamanho do log que dispara a compactação em segundo plano
+    static final int BUFFER_JSON = 64 << 10; // Buffer fixo da listagem em streaming
+    static final long CACHE_LISTA_MAX = parseLongSafe(config("cacheListaMb", ""), 16) << 20; // Maior lista mantida em cache
+    static final int LOTE_BUSCA = 1024; // Tarefas indexadas para a busca por aquisição da trava de escrita
+    static final int GZIP_MIN = parseIntSafe(config("gzipMinBytes", ""), 1024); // Respostas menores que isso não compensam compressão
+    static final String EPOCA = Long.toString(System.currentTimeMillis(), 36); // Distingue ETags entre execuções
+    static final String SUFIXO_GZIP = "-gz"; // Marca, no fim do ETag, o corpo comprimido com gzip
+    // Durabilidade (kanban.durabilidade): "sync" responde depois do fsync; "async" responde na hora e o
+    // log é gravado a cada kanban.flushMs ou kanban.flushMutacoes registros, o que vier antes
+    static final boolean ASSINCRONO = "async".equalsIgnoreCase(config("durabilidade", "sync"));
+    static final long FLUSH_MS = parseLongSafe(config("flushMs", ""), 100);
+    static final int FLUSH_MUTACOES = parseIntSafe(config("flushMutacoes", ""), 1000);
+    static final char[] HEX = "0123456789abcdef".toCharArray(); // Dígitos para escapes \\uXXXX
+    // Limites de contrapressão do armazenamento (kanban.maxTarefas / kanban.maxMemoriaMb)
+    static final int MAX_TAREFAS = (int) Math.min(Integer.MAX_VALUE,
+            parseLongSafe(config("maxTarefas", ""), Integer.MAX_VALUE)); // Sem limite de quantidade por padrão
+    static final long MAX_MEMORIA = parseLongSafe(config("maxMemoriaMb", ""),
+            Runtime.getRuntime().maxMemory() / 2 >> 20) << 20; // Metade do heap por padrão
+    // Textos de até kanban.dedupTextos bytes são guardados uma única vez (0 desliga a deduplicação)
+    static final int DEDUP_TEXTOS = parseIntSafe(config("dedupTextos", ""), 64);
 
-    // Arrays para armazenar os dados das tarefas em memória
-    static String[] ids = new String[MAX]; // IDs das tarefas
-    static String[] titulos = new String[MAX]; // Títulos das tarefas
-    static String[] descrs = new String[MAX]; // Descrições das tarefas
-    static int[] status = new int[MAX];     // Status das tarefas (0: TODO, 1: DOING, 2: DONE)
-    static long[] criados = new long[MAX]; // Timestamp de criação das tarefas
-    static int n = 0; // Contador de tarefas ativas
+    static final int FEED_EVENTOS = parseIntSafe(config("feedEventos", ""), 4096); // Eventos retomáveis por quadro
+
+    // Modo seguidor (kanban.primario): réplica somente leitura que acompanha os logs do primário no mesmo
+    // diretório e redireciona as escritas para a URL do primário
+    static final String PRIMARIO = config("primario", "").replaceAll("/+$", "");
+    static final boolean SEGUIDOR = !PRIMARIO.isEmpty();
+    static final long SEGUIDOR_INTERVALO_MS = Math.max(1, parseLongSafe(config("seguidorIntervaloMs", ""), 20));
+
+    // Quadros: o padrão (data_tasks.* no diretório de trabalho) e os carregados sob demanda
+    static final Quadro PADRAO = new Quadro("padrao", Paths.get(""), true);
+    static final Quadros quadros = new Quadros(Paths.get(config("quadrosDir", "quadros")),
+            parseLongSafe(config("quadrosMemoriaMb", ""), MAX_MEMORIA >> 20) << 20, PADRAO);
+
+    static RequestExecutor executor; // Executor das requisições HTTP (kanban.executor)
 
     /**
      * Método principal que inicia a aplicação.
      * Carrega os dados existentes, cria e inicia o servidor HTTP.
-     * @param args Argumentos de linha de comando (não utilizados).
+     * @param args Argumentos de linha de comando ("--stress [threads] [operacoes]" roda o teste de estresse;
+     *             "--bench [saida.json] [anterior.json]" roda os benchmarks;
+     *             "--carga [url] [saida.json]" roda o gerador de carga contra um servidor em execução;
+     *             "--exportar arquivo" e "--importar arquivo" convertem entre o quadro e um snapshot .csv ou .bin).
      * @throws Exception Em caso de erro ao iniciar o servidor ou carregar dados.
      */
     public static void main(String[] args) throws Exception {
-        carregar(); // Carrega as tarefas do arquivo CSV
+        if (args.length > 0 && "--stress".equals(args[0])) {
+            estresse(args); // Teste de estresse da concorrência, sem servidor e sem persistência
+            return;
+        }
+        if (args.length > 0 && "--bench".equals(args[0])) {
+            Benchmarks.executar(args); // Benchmarks dos caminhos quentes, sem persistência
+            return;
+        }
+        if (args.length > 0 && "--carga".equals(args[0])) {
+            GeradorCarga.executar(args); // Gerador de carga contra um servidor já em execução
+            return;
+        }
+        if (args.length > 1 && "--exportar".equals(args[0])) {
+            PADRAO.exportar(Paths.get(args[1])); // Grava o quadro atual em outro arquivo, sem iniciar o servidor
+            return;
+        }
+        if (args.length > 1 && "--importar".equals(args[0])) {
+            PADRAO.importar(Paths.get(args[1])); // Substitui o quadro pelo conteúdo do arquivo, sem iniciar o servidor
+            return;
+        }
+        // Carrega o quadro padrão, monta o índice de busca em segundo plano e abre o log de mutações (no modo
+        // seguidor, passa a acompanhar o log do primário); os demais quadros são carregados no primeiro acesso
+        PADRAO.abrir();
 
+        // Cabeçalhos e corpo saem em writes separados: sem TCP_NODELAY, clientes keep-alive esperam o
+        // ACK atrasado (~40 ms) a cada resposta. Lido pelo HttpServer na criação; -D na linha de comando prevalece
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+        // Prazo para receber a requisição inteira (linha, cabeçalhos e corpo): depois dele o HttpServer fecha a
+        // conexão, o que também solta a thread que responde 503 a um cliente lento
+        if (System.getProperty("sun.net.httpserver.maxReqTime") == null)
+            System.setProperty("sun.net.httpserver.maxReqTime", Long.toString(parseLongSafe(config("tempoRequisicao", ""), 30)));
         // Cria um servidor HTTP na porta especificada
         HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        // Filtros de todas as rotas: métricas primeiro (para medir também os 503), sobrecarga e, no modo
+        // seguidor, o redirecionamento das escritas para o primário
+        List<Filter> filtros = SEGUIDOR ? List.of(new FiltroMetricas(), new FiltroSobrecarga(), new FiltroSeguidor())
+                : List.of(new FiltroMetricas(), new FiltroSobrecarga());
         // Define o manipulador para a rota raiz ("/")
-        server.createContext("/", new RootHandler());
-        // Define o manipulador para a rota da API de tarefas ("/api/tasks")
-        server.createContext("/api/tasks", new ApiTasksHandler());
-        server.setExecutor(null); // Usa o executor padrão (cria novas threads conforme necessário)
-        System.out.println("Servindo em http://localhost:" + PORT); // Informa a URL do servidor
+        server.createContext("/", new RootHandler()).getFilters().addAll(filtros);
+        // Define o manipulador para a rota da API de tarefas ("/api/tasks") e para a dos demais quadros ("/api/boards")
+        ApiTasksHandler api = new ApiTasksHandler();
+        server.createContext("/api/tasks", api).getFilters().addAll(filtros);
+        server.createContext("/api/boards", api).getFilters().addAll(filtros);
+        // Métricas de fila do executor ("/api/executor")
+        server.createContext("/api/executor", ex -> sendJson(ex, 200, executor.metricasJSON())).getFilters().addAll(filtros);
+        // Métricas no formato do Prometheus ("/metrics")
+        server.createContext("/metrics", App::responderMetricas).getFilters().addAll(filtros);
+        // Estado da replicação de cada quadro carregado ("/api/replication", somente no modo seguidor)
+        if (SEGUIDOR) server.createContext("/api/replication", ex -> sendJson(ex, 200, Seguidor.estadoJSON())).getFilters().addAll(filtros);
+        executor = RequestExecutor.configurado(); // padrao, virtual ou pool (kanban.executor)
+        server.setExecutor(executor);
+        // Ao encerrar (Ctrl+C, SIGTERM), grava o que estiver pendente no log antes de sair
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> encerrar(server), "kanban-encerramento"));
+        System.out.println("Servindo em http://localhost:" + PORT + " (executor " + executor.modo
+                + (SEGUIDOR ? ", seguidor de " + PRIMARIO : ", durabilidade " + (ASSINCRONO ? "async" : "sync")) + ")"); // Informa a URL do servidor
         server.start(); // Inicia o servidor HTTP
     }
 
+    /**
+     * Encerramento limpo: para de aceitar requisições, bloqueia novas mutações e grava no log tudo que
+     * ainda estava pendente em cada quadro carregado (no modo async, as mutações já respondidas que esperavam
+     * o próximo lote). As travas de escrita não são liberadas: a JVM está terminando.
+     * @param server O servidor HTTP.
+     */
+    static void encerrar(HttpServer server) {
+        server.stop(0);
+        for (Quadro q : quadros.carregados()) {
+            q.tarefas.trava.writeLock();
+            try {
+                if (q.wal != null) q.wal.fechar();
+            } catch (IOException e) {
+                System.out.println("Falha ao gravar o log do quadro " + q.nome + " no encerramento: " + e.getMessage());
+            }
+        }
+        System.out.println("Logs gravados, encerrando");
+    }
+
+    /**
+     * Teste de estresse da concorrência do armazenamento ("java App.java --stress [threads] [operacoes]").
+     * Várias threads criam, movem e excluem tarefas enquanto outras listam o quadro sem parar. Ao final,
+     * confere se nenhuma tarefa foi perdida ou duplicada, se o status de cada uma é o último gravado, se o
+     * índice de IDs e a lista em ordem de criação estão coerentes, e se toda listagem observada era um
+     * JSON completo, sem IDs repetidos e em ordem de criação. Roda apenas em memória (sem log).
+     * @param args "--stress", quantidade de threads escritoras e operações por thread.
+     * @throws Exception Em caso de falha inesperada de uma thread.
+     */
+    static void estresse(String[] args) throws Exception {
+        int escritoras = args.length > 1 ? parseIntSafe(args[1], 8) : 8;
+        int operacoes = args.length > 2 ? parseIntSafe(args[2], 50_000) : 50_000;
+        int leitoras = Math.max(2, escritoras / 2);
+        Quadro q = PADRAO; // Nunca aberto aqui: somente memória, sem log
+        TaskStore tarefas = q.tarefas;
+        tarefas.limpar();
+
+        ExecutorService pool = Executors.newFixedThreadPool(escritoras + leitoras);
+        List<Future<Map<String, Integer>>> resultados = new ArrayList<>();
+        List<Future<String>> leituras = new ArrayList<>();
+        AtomicBoolean fim = new AtomicBoolean(false);
+        long inicio = System.nanoTime();
+
+        for (int w = 0; w < escritoras; w++) {
+            final long semente = w;
+            resultados.add(pool.submit(() -> {
+                Random r = new Random(semente);
+                Map<String, Integer> minhas = new HashMap<>(); // Estado esperado das tarefas desta thread
+                List<String> vivas = new ArrayList<>();
+                for (int op = 0; op < operacoes; op++) {
+                    int sorteio = r.nextInt(4);
+                    if (sorteio < 2 || vivas.isEmpty()) {
+                        String id = (String) q.criarTarefa("t" + semente + "-" + op, "d;\"" + op + "\"").get("id");
+                        minhas.put(id, 0);
+                        vivas.add(id);
+                    } else if (sorteio == 2) {
+                        String id = vivas.get(r.nextInt(vivas.size()));
+                        int st = r.nextInt(3);
+                        if (q.moverTarefa(id, st) == null) throw new IllegalStateException("tarefa sumiu: " + id);
+                        minhas.put(id, st);
+                    } else {
+                        int k = r.nextInt(vivas.size());
+                        String id = vivas.get(k);
+                        vivas.set(k, vivas.get(vivas.size() - 1));
+                        vivas.remove(vivas.size() - 1);
+                        if (!q.excluirTarefa(id)) throw new IllegalStateException("exclusão perdida: " + id);
+                        minhas.remove(id);
+                    }
+                }
+                return minhas;
+            }));
+        }
+        for (int l = 0; l < leitoras; l++) {
+            leituras.add(pool.submit(() -> {
+                long listagens = 0;
+                while (!fim.get()) {
+                    String json = q.listarJSON();
+                    if (!json.startsWith("[") || !json.endsWith("]")) return "JSON truncado";
+                    Set<String> vistos = new HashSet<>();
+                    long ultimo = Long.MIN_VALUE;
+                    for (int p = json.indexOf("\"id\":\""); p >= 0; p = json.indexOf("\"id\":\"", p + 1)) {
+                        String id = json.substring(p + 6, json.indexOf('"', p + 6));
+                        if (!vistos.add(id)) return "ID repetido na listagem: " + id;
+                        int c = json.indexOf("\"criadoEm\":", p) + 11;
+                        long criado = Long.parseLong(json.substring(c, json.indexOf('}', c)));
+                        if (criado < ultimo) return "listagem fora da ordem de criação";
+                        ultimo = criado;
+                    }
+                    listagens++;
+                }
+                return "ok " + listagens;
+            }));
+        }
+
+        Map<String, Integer> esperado = new HashMap<>();
+        for (Future<Map<String, Integer>> f : resultados) esperado.putAll(f.get());
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+        fim.set(true);
+        List<String> falhas = new ArrayList<>();
+        long listagens = 0;
+        for (Future<String> f : leituras) {
+            String s = f.get();
+            if (s.startsWith("ok ")) listagens += Long.parseLong(s.substring(3));
+            else falhas.add(s);
+        }
+        pool.shutdown();
+
+        // Confere o estado final contra o esperado por cada thread
+        if (tarefas.tamanho() != esperado.size())
+            falhas.add("tamanho " + tarefas.tamanho() + " != esperado " + esperado.size());
+        for (Map.Entry<String, Integer> e : esperado.entrySet()) {
+            int i = q.findIdxById(e.getKey());
+            if (i < 0) falhas.add("tarefa perdida: " + e.getKey());
+            else if (tarefas.status(i) != e.getValue()) falhas.add("status divergente: " + e.getKey());
+        }
+        int percorridas = 0;
+        for (int i = tarefas.primeiro(); i >= 0 && percorridas <= esperado.size(); i = tarefas.proximo(i)) {
+            percorridas++;
+            if (q.findIdxById(tarefas.id(i)) != i) falhas.add("índice divergente na posição " + i);
+        }
+        if (percorridas != tarefas.tamanho()) falhas.add("lista em ordem de criação com " + percorridas + " tarefas");
+        // Os índices por status devem conter exatamente as tarefas de cada coluna
+        for (int st = 0; st < 3; st++) {
+            final int s = st;
+            long esperadas = esperado.values().stream().filter(v -> v == s).count();
+            int[] pos = tarefas.consultar(st, null, Long.MIN_VALUE, false, Integer.MAX_VALUE);
+            if (pos.length != esperadas) falhas.add("índice do status " + st + " com " + pos.length + " != " + esperadas);
+            for (int i : pos) if (tarefas.status(i) != st) falhas.add("tarefa no índice de status errado: " + tarefas.id(i));
+            // As estatísticas incrementais devem bater com o índice
+            if (tarefas.estatisticas.tarefas[st] != esperadas)
+                falhas.add("estatísticas do status " + st + " com " + tarefas.estatisticas.tarefas[st] + " != " + esperadas);
+        }
+
+        System.out.println(escritoras + " escritoras x " + operacoes + " operações em " + ms + " ms ("
+                + (escritoras * (long) operacoes * 1000 / Math.max(1, ms)) + " ops/s), " + listagens
+                + " listagens concorrentes, " + tarefas.tamanho() + " tarefas no fim");
+        if (!falhas.isEmpty()) {
+            falhas.stream().limit(20).forEach(f -> System.out.println("FALHA: " + f));
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Benchmarks dos caminhos quentes ("java App.java --bench [saida.json] [anterior.json]").
+     * Cada caso roda em laço por tempo fixo: primeiro iterações de aquecimento, para o JIT compilar o
+     * caminho, depois as iterações medidas; o resultado é o tempo médio por operação e o desvio padrão
+     * entre iterações. O retorno de cada operação vai para um sumidouro volátil, para que o JIT não
+     * elimine o trabalho medido. Usa somente memória e um diretório temporário (sem log e sem tocar nos
+     * arquivos do quadro). Duração e quantidade das iterações vêm de kanban.benchMs, kanban.benchIteracoes
+     * e kanban.benchAquecimento; os clientes HTTP, de kanban.benchClientes.
+     * <p>
+     * Os resultados são gravados em JSON (um caso por linha, para facilitar o diff); com um arquivo de uma
+     * execução anterior, imprime também a variação de cada caso.
+     */
+    static final class Benchmarks {
+        private static final long ITERACAO_NS = parseLongSafe(config("benchMs", ""), 1000) * 1_000_000;
+        private static final int ITERACOES = Math.max(1, parseIntSafe(config("benchIteracoes", ""), 5));
+        private static final int AQUECIMENTO = parseIntSafe(config("benchAquecimento", ""), 3);
+        private static final int CLIENTES = Math.max(1, parseIntSafe(config("benchClientes", ""), 8));
+        private static final String[] PALAVRAS = {"revisar", "relatório", "reunião", "cliente", "deploy", "bug",
+                "página", "login", "dados", "API", "integração", "teste", "banco", "documentação", "PR"};
+        static volatile long sumidouro; // Recebe os resultados das operações medidas
+
+        /**
+         * Uma execução do caso medido.
+         */
+        interface Operacao {
+            /**
+             * @return Um valor derivado do resultado, somado ao sumidouro.
+             */
+            long executar() throws Exception;
+        }
+
+        private final List<String> resultados = new ArrayList<>(); // Linhas JSON dos casos medidos
+
+        /**
+         * Roda todos os casos e grava os resultados.
+         * @param args "--bench", arquivo de saída (padrão bench.json) e, opcionalmente, o arquivo de uma
+         *             execução anterior para comparar.
+         */
+        static void executar(String[] args) throws Exception {
+            Path saida = Paths.get(args.length > 1 ? args[1] : "bench.json");
+            Map<String, Double> anterior = args.length > 2 ? ler(Paths.get(args[2])) : Map.of();
+            Quadro q = PADRAO; // Nunca aberto aqui: somente memória, as mutações não esperam fsync
+            TaskStore tarefas = q.tarefas;
+            Benchmarks b = new Benchmarks();
+            System.out.printf("%d iterações de %d ms (%d de aquecimento)%n", ITERACOES, ITERACAO_NS / 1_000_000, AQUECIMENTO);
+
+            for (int n : new int[] {1_000, 10_000, 100_000}) {
+                popular(n);
+                b.medir("listarJSON", n, () -> q.listarJSON().length());
+            }
+            // Daqui em diante o quadro tem 100 mil tarefas
+            int n = tarefas.tamanho();
+            String[] ids = amostraIds(1 << 16);
+            String[] ausentes = new String[ids.length];
+            Random r = new Random(1);
+            for (int k = 0; k < ausentes.length; k++) {
+                do {
+                    ausentes[k] = String.format("%08x", r.nextInt());
+                } while (q.findIdxById(ausentes[k]) >= 0);
+            }
+            int[] cursor = {0};
+            b.medir("findIdxById", n, () -> q.findIdxById(ids[cursor[0]++ & (ids.length - 1)]));
+            b.medir("findIdxById ausente", n, () -> q.findIdxById(ausentes[cursor[0]++ & (ausentes.length - 1)]));
+            // Exclui a tarefa mais antiga e cria outra, mantendo o tamanho do quadro
+            b.medir("excluirTarefa+criarTarefa", n, () -> {
+                q.excluirTarefa(tarefas.id(tarefas.primeiro()));
+                return q.criarTarefa("Nova tarefa", "Criada pelo benchmark").size();
+            });
+            byte[] corpo = "{\"titulo\":\"Revisar relatório\",\"descricao\":\"Conferir os \\\"números\\\" do trimestre\\nantes da reunião\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+            b.medir("JsonReader.objeto", 1, () -> JsonReader.de(corpo).objeto().descricao.length());
+            // Busca textual: os termos do gerador aparecem em boa parte do quadro, o pior caso do índice
+            for (String consulta : new String[] {"relatorio", "relat cli", "integracao deploy bug"}) {
+                b.medir("pesquisar " + consulta, n, () -> {
+                    long stamp = tarefas.trava.readLock();
+                    try {
+                        return tarefas.pesquisar(consulta, -1, 20).total();
+                    } finally {
+                        tarefas.trava.unlockRead(stamp);
+                    }
+                });
+            }
+            // Estatísticas: independe da quantidade de tarefas, só das horas com criações
+            b.medir("estatisticas", n, () -> {
+                long stamp = tarefas.trava.readLock();
+                try {
+                    return tarefas.estatisticas(System.currentTimeMillis(), 1, Long.MIN_VALUE).length();
+                } finally {
+                    tarefas.trava.unlockRead(stamp);
+                }
+            });
+
+            Path dir = Files.createTempDirectory("kanban-bench");
+            Path csv = dir.resolve("tarefas.csv"), bin = dir.resolve("tarefas.bin");
+            try {
+                Snapshot s = tarefas.capturar();
+                b.medir("salvar csv", n, () -> {
+                    gravarSnapshot(csv, s);
+                    return Files.size(csv);
+                });
+                b.medir("salvar bin", n, () -> {
+                    gravarSnapshot(bin, s);
+                    return Files.size(bin);
+                });
+                b.medir("carregar csv", n, () -> {
+                    tarefas.limpar();
+                    return CargaCsv.carregar(csv, tarefas);
+                });
+                b.medir("carregar bin", n, () -> {
+                    tarefas.limpar();
+                    return SnapshotBinario.carregar(bin, tarefas);
+                });
+            } finally {
+                Files.deleteIfExists(csv);
+                Files.deleteIfExists(bin);
+                Files.deleteIfExists(dir);
+            }
+            b.http(n, amostraIds(1 << 16)); // O quadro foi recarregado: as exclusões acima mudaram os IDs
+            b.gravar(saida, anterior);
+        }
+
+        /**
+         * Substitui o quadro por n tarefas com textos parecidos com os de um quadro real.
+         */
+        static void popular(int n) {
+            TaskStore tarefas = PADRAO.tarefas;
+            tarefas.limpar();
+            Random r = new Random(n);
+            for (int k = 0; k < n; k++) {
+                int i = tarefas.criar(frase(r, 2 + r.nextInt(5)), frase(r, r.nextInt(20)));
+                tarefas.definirStatus(i, r.nextInt(3), System.currentTimeMillis());
+            }
+        }
+
+        private static String frase(Random r, int palavras) {
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < palavras; k++) {
+                if (k > 0) sb.append(' ');
+                sb.append(PALAVRAS[r.nextInt(PALAVRAS.length)]);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * @return Uma amostra (com repetição) de IDs existentes; o tamanho deve ser potência de 2.
+         */
+        private static String[] amostraIds(int tamanho) {
+            TaskStore tarefas = PADRAO.tarefas;
+            String[] todos = new String[tarefas.tamanho()];
+            int k = 0;
+            for (int i = tarefas.primeiro(); i >= 0; i = tarefas.proximo(i)) todos[k++] = tarefas.id(i);
+            Random r = new Random(2);
+            String[] ids = new String[tamanho];
+            for (k = 0; k < tamanho; k++) ids[k] = todos[r.nextInt(todos.length)];
+            return ids;
+        }
+
+        /**
+         * Mede um caso: aquecimento, iterações medidas e registro do resultado.
+         */
+        void medir(String nome, int n, Operacao op) throws Exception {
+            for (int k = 0; k < AQUECIMENTO; k++) iteracao(op);
+            double[] ns = new double[ITERACOES];
+            for (int k = 0; k < ITERACOES; k++) ns[k] = iteracao(op);
+            registrar(nome, n, ns, "");
+        }
+
+        /**
+         * Roda a operação por ITERACAO_NS. Para que a leitura do relógio não pese em operações de poucos
+         * nanossegundos, elas rodam em rajadas que dobram até a rajada levar 1% da iteração.
+         * @return O tempo médio por operação, em ns.
+         */
+        private static double iteracao(Operacao op) throws Exception {
+            long ops = 0, acc = 0, rajada = 1, inicio = System.nanoTime(), fim = inicio + ITERACAO_NS, agora;
+            do {
+                long t0 = System.nanoTime();
+                for (long k = 0; k < rajada; k++) acc += op.executar();
+                ops += rajada;
+                agora = System.nanoTime();
+                if (agora - t0 < ITERACAO_NS / 100) rajada *= 2;
+            } while (agora < fim);
+            sumidouro += acc;
+            return (double) (agora - inicio) / ops;
+        }
+
+        /**
+         * Vazão de ponta a ponta: sobe o manipulador da API, com o filtro de sobrecarga e o executor
+         * configurado (kanban.executor), em um HttpServer local em porta livre, e mantém CLIENTES clientes
+         * em laço fechado, cada um com seu HttpClient (conexão keep-alive). Além do tempo por requisição
+         * (o inverso da vazão), registra a latência p50 e p99 das iterações medidas.
+         * @param ids IDs existentes para as mudanças de status (devem continuar existindo durante a medição).
+         */
+        void http(int n, String[] ids) throws Exception {
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/api/tasks", new ApiTasksHandler()).getFilters()
+                    .addAll(List.of(new FiltroMetricas(), new FiltroSobrecarga()));
+            executor = RequestExecutor.configurado();
+            server.setExecutor(executor);
+            server.start();
+            String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/tasks";
+            ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES);
+            try {
+                medirHttp(clientes, "http GET /api/tasks?limit=50", n,
+                        r -> HttpRequest.newBuilder(URI.create(base + "?limit=50&status=" + r.nextInt(3))).build());
+                medirHttp(clientes, "http POST /api/tasks", n,
+                        r -> HttpRequest.newBuilder(URI.create(base))
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"titulo\":\"Tarefa " + r.nextInt()
+                                        + "\",\"descricao\":\"Criada pelo benchmark\"}")).build());
+                medirHttp(clientes, "http PATCH /api/tasks/{id}/status", n,
+                        r -> HttpRequest.newBuilder(URI.create(base + "/" + ids[r.nextInt(ids.length)] + "/status"))
+                                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"status\":" + r.nextInt(3) + "}")).build());
+            } finally {
+                clientes.shutdownNow();
+                server.stop(0);
+            }
+        }
+
+        private void medirHttp(ExecutorService clientes, String nome, int n,
+                               Function<Random, HttpRequest> requisicao) throws Exception {
+            for (int k = 0; k < AQUECIMENTO; k++) iteracaoHttp(clientes, requisicao, null);
+            double[] ns = new double[ITERACOES];
+            List<long[]> latencias = new ArrayList<>();
+            for (int k = 0; k < ITERACOES; k++) ns[k] = iteracaoHttp(clientes, requisicao, latencias);
+            int total = latencias.stream().mapToInt(l -> (int) l[0]).sum(), p = 0;
+            long[] todas = new long[total];
+            for (long[] l : latencias) {
+                System.arraycopy(l, 1, todas, p, (int) l[0]);
+                p += (int) l[0];
+            }
+            Arrays.sort(todas);
+            registrar(nome, n, ns, total == 0 ? "" : String.format(Locale.ROOT, ",\"p50Ns\":%d,\"p99Ns\":%d,\"clientes\":%d",
+                    todas[total / 2], todas[(int) Math.min(total - 1, total * 99L / 100)], CLIENTES));
+        }
+
+        /**
+         * Uma iteração com todos os clientes ao mesmo tempo até ITERACAO_NS.
+         * @param latencias Recebe, por cliente, [quantidade, latências em ns...]; null no aquecimento.
+         * @return O tempo de parede por requisição concluída (inverso da vazão), em ns.
+         */
+        private static double iteracaoHttp(ExecutorService clientes, Function<Random, HttpRequest> requisicao,
+                                           List<long[]> latencias) throws Exception {
+            long inicio = System.nanoTime(), fim = inicio + ITERACAO_NS;
+            List<Future<long[]>> fs = new ArrayList<>();
+            for (int c = 0; c < CLIENTES; c++) {
+                final long semente = c + inicio;
+                fs.add(clientes.submit(() -> {
+                    HttpClient cliente = HttpClient.newHttpClient();
+                    Random r = new Random(semente);
+                    long[] l = new long[1024];
+                    int k = 1;
+                    while (System.nanoTime() < fim) {
+                        HttpRequest req = requisicao.apply(r);
+                        long t0 = System.nanoTime();
+                        HttpResponse<byte[]> resp = cliente.send(req, HttpResponse.BodyHandlers.ofByteArray());
+                        long t = System.nanoTime() - t0;
+                        if (resp.statusCode() >= 400) throw new IllegalStateException(req.uri() + " respondeu " + resp.statusCode());
+                        if (k == l.length) l = Arrays.copyOf(l, k * 2);
+                        l[k++] = t;
+                    }
+                    l[0] = k - 1;
+                    return l;
+                }));
+            }
+            long total = 0;
+            for (Future<long[]> f : fs) {
+                long[] l = f.get();
+                total += l[0];
+                if (latencias != null) latencias.add(l);
+            }
+            return (double) (System.nanoTime() - inicio) / Math.max(1, total);
+        }
+
+        /**
+         * Calcula média e desvio padrão das iterações, imprime o caso e guarda a linha JSON.
+         */
+        private void registrar(String nome, int n, double[] ns, String extra) {
+            double media = Arrays.stream(ns).average().orElse(0);
+            double desvio = ns.length < 2 ? 0
+                    : Math.sqrt(Arrays.stream(ns).map(x -> (x - media) * (x - media)).sum() / (ns.length - 1));
+            System.out.printf(Locale.ROOT, "%-34s %7d %14.1f ns/op ± %5.1f%% %14.1f ops/s%n",
+                    nome, n, media, media > 0 ? 100 * desvio / media : 0, 1e9 / media);
+            resultados.add(String.format(Locale.ROOT, "{\"nome\":\"%s\",\"n\":%d,\"nsPorOp\":%.1f,\"desvio\":%.1f,\"opsPorSegundo\":%.1f%s}",
+                    jsonEsc(nome), n, media, desvio, 1e9 / media, extra));
+        }
+
+        /**
+         * Grava os resultados e, havendo uma execução anterior, imprime a variação de cada caso.
+         */
+        private void gravar(Path saida, Map<String, Double> anterior) throws IOException {
+            String json = String.format(Locale.ROOT, "{\"java\":\"%s\",\"processadores\":%d,\"iteracoes\":%d,\"iteracaoMs\":%d,%n\"resultados\":[%n%s%n]}%n",
+                    jsonEsc(System.getProperty("java.version")), Runtime.getRuntime().availableProcessors(),
+                    ITERACOES, ITERACAO_NS / 1_000_000, String.join(",\n", resultados));
+            Files.write(saida, json.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Resultados gravados em " + saida);
+            if (anterior.isEmpty()) return;
+            Map<String, Double> atual = ler(saida);
+            for (Map.Entry<String, Double> e : atual.entrySet()) {
+                Double antes = anterior.get(e.getKey());
+                if (antes == null || antes <= 0) continue;
+                double variacao = 100 * (e.getValue() - antes) / antes;
+                System.out.printf(Locale.ROOT, "%-42s %+7.1f%% %s%n", e.getKey(), variacao,
+                        variacao > 0 ? "(mais lento)" : "(mais rápido)");
+            }
+        }
+
+        /**
+         * Lê o tempo por operação de cada caso ("nome/n") de um arquivo gravado por gravar().
+         */
+        static Map<String, Double> ler(Path p) throws IOException {
+            Map<String, Double> m = new LinkedHashMap<>();
+            java.util.regex.Matcher mt = java.util.regex.Pattern
+                    .compile("\"nome\":\"([^\"]*)\",\"n\":(\\d+),\"nsPorOp\":([0-9.]+)")
+                    .matcher(new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
+            while (mt.find()) m.put(mt.group(1) + "/" + mt.group(2), Double.parseDouble(mt.group(3)));
+            return m;
+        }
+    }
+
+    /**
+     * Gerador de carga contra um servidor em execução ("java App.java --carga [url] [saida.json]").
+     * As requisições saem em malha aberta, na taxa kanban.cargaTaxa por segundo, durante kanban.cargaSegundos:
+     * a k-ésima requisição tem um horário marcado (início + k / taxa) e sai nesse horário mesmo que as
+     * anteriores ainda não tenham voltado, cada uma na sua thread (virtual no Java 21+). A latência é
+     * medida a partir do horário marcado, e não do envio, para que um servidor lento não esconda a própria
+     * fila atrasando o gerador (omissão coordenada). A mistura de operações vem de kanban.cargaMix
+     * ("get=60,post=20,patch=15,delete=5": listagem paginada, criação, mudança de status e exclusão).
+     * <p>O gerador mantém um modelo do que o servidor deve conter: as tarefas que ele criou, com o último
+     * status confirmado, e as que excluiu. Cada tarefa recebe no máximo uma operação por vez, então a
+     * ordem das respostas é a ordem das mutações. Ao final, a listagem completa é conferida contra o
+     * modelo: nenhuma tarefa perdida, duplicada, com status divergente, excluída e de volta, ou
+     * desconhecida (além das criações cujo resultado não se sabe, por erro de conexão ou tempo esgotado).
+     * Com kanban.cargaModelo, o modelo é gravado ao final e, se o arquivo já existir, lido e conferido no
+     * início: rodar de novo depois de reiniciar o servidor valida a persistência.
+     */
+    static final class GeradorCarga {
+        private static final double TAXA = Math.max(1, parseIntSafe(config("cargaTaxa", ""), 200));
+        private static final int SEGUNDOS = Math.max(0, parseIntSafe(config("cargaSegundos", ""), 30));
+        private static final long TIMEOUT_MS = parseLongSafe(config("cargaTimeoutMs", ""), 10_000);
+        private static final String MODELO = config("cargaModelo", "");
+        private static final int MAX_PENDENTES = 10_000; // Acima disso a requisição não sai (conta como não enviada)
+        private static final String[] OPERACOES = {"get", "post", "patch", "delete"};
+        private static final int GET = 0, POST = 1, PATCH = 2, DELETE = 3;
+        private static final java.util.regex.Pattern TAREFA =
+                java.util.regex.Pattern.compile("\\{\"id\":\"([^\"]*)\".*?,\"status\":(\\d),\"criadoEm\":");
+
+        private final String base; // URL das tarefas (/api/tasks ou /api/boards/{quadro}/tasks)
+        private final HttpClient cliente;
+        private final int[] pesos = new int[OPERACOES.length];
+
+        // Modelo do quadro: tarefas criadas pelo gerador (ID → status), livres para a próxima operação
+        private final ConcurrentHashMap<String, Integer> modelo = new ConcurrentHashMap<>();
+        private final Set<String> excluidas = ConcurrentHashMap.newKeySet();
+        private final Set<String> incertas = ConcurrentHashMap.newKeySet(); // Resultado desconhecido: fora da conferência
+        private final AtomicInteger criacoesIncertas = new AtomicInteger();
+        private final List<String> livres = new ArrayList<>(); // Tarefas do modelo sem operação em andamento
+        private final Set<String> iniciais = new HashSet<>(); // Tarefas que já existiam e não são do gerador
+
+        // Resultado de cada requisição, pela posição no cronograma
+        private long[] latencias; // ns desde o horário marcado
+        private byte[] operacoes;
+        private short[] codigos; // Status HTTP, 0 para erro de conexão ou tempo esgotado, -1 para não enviada
+
+        GeradorCarga(String base, HttpClient cliente) {
+            this.base = base;
+            this.cliente = cliente;
+            for (String par : config("cargaMix", "get=60,post=20,patch=15,delete=5").split(",")) {
+                String[] kv = par.trim().split("=");
+                int op = Arrays.asList(OPERACOES).indexOf(kv[0].trim().toLowerCase(Locale.ROOT));
+                if (op < 0 || kv.length != 2) throw new IllegalArgumentException("kanban.cargaMix inválido: " + par);
+                pesos[op] = Math.max(0, parseIntSafe(kv[1], 0));
+            }
+            if (Arrays.stream(pesos).sum() == 0) throw new IllegalArgumentException("kanban.cargaMix sem operações");
+        }
+
+        /**
+         * Roda a carga, confere o quadro e grava os resultados; sai com código 1 se a conferência falhar.
+         * @param args "--carga", a URL das tarefas (padrão http://localhost:PORT/api/tasks) e o arquivo de
+         *             saída (padrão carga.json).
+         */
+        static void executar(String[] args) throws Exception {
+            String base = (args.length > 1 ? args[1] : "http://localhost:" + PORT + "/api/tasks").replaceAll("/+$", "");
+            Path saida = Paths.get(args.length > 2 ? args[2] : "carga.json");
+            ExecutorService threads;
+            try {
+                threads = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Threads virtuais exigem Java 21+; usando uma thread de plataforma por requisição");
+                threads = Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "kanban-carga");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            HttpClient cliente = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(TIMEOUT_MS)).build();
+            GeradorCarga g = new GeradorCarga(base, cliente);
+            List<String> falhas = new ArrayList<>();
+            try {
+                g.carregarModelo(falhas);
+            } catch (IOException e) {
+                System.out.println("Servidor indisponível em " + base + ": " + e);
+                System.exit(1);
+            }
+            long ns = g.rodar(threads);
+            threads.shutdown();
+            falhas.addAll(g.conferir("final", true));
+            g.gravar(saida, ns, falhas.size());
+            if (!MODELO.isEmpty()) g.gravarModelo(Paths.get(MODELO));
+            if (!falhas.isEmpty()) {
+                falhas.stream().limit(20).forEach(f -> System.out.println("FALHA: " + f));
+                System.exit(1);
+            }
+            System.out.println("OK");
+        }
+
+        /**
+         * Lê o modelo gravado por uma execução anterior (kanban.cargaModelo) e o confere contra o servidor
+         * antes da carga; anota as tarefas que já existiam e não são do gerador.
+         */
+        private void carregarModelo(List<String> falhas) throws Exception {
+            Path p = MODELO.isEmpty() ? null : Paths.get(MODELO);
+            if (p != null && Files.exists(p)) {
+                for (String l : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+                    String[] a = l.split(";");
+                    if (a.length != 2 || "id".equals(a[0])) continue;
+                    int st = parseIntSafe(a[1], -1);
+                    if (st >= 0) modelo.put(a[0], st);
+                    else excluidas.add(a[0]);
+                }
+                livres.addAll(modelo.keySet());
+                System.out.printf("Modelo %s: %d tarefas e %d exclusões da execução anterior%n", p, modelo.size(), excluidas.size());
+                falhas.addAll(conferir("inicial", false)); // As tarefas de outros clientes ainda não são conhecidas
+            }
+            Map<String, Integer> atual = new HashMap<>();
+            listar(atual, new ArrayList<>());
+            for (String id : atual.keySet()) {
+                if (!modelo.containsKey(id)) iniciais.add(id);
+            }
+        }
+
+        /**
+         * Dispara as requisições nos horários marcados e espera todas voltarem.
+         * @return A duração da carga, em ns (até a última resposta).
+         */
+        private long rodar(ExecutorService threads) throws InterruptedException {
+            int total = (int) Math.min(Integer.MAX_VALUE - 8, (long) (TAXA * SEGUNDOS));
+            latencias = new long[total];
+            operacoes = new byte[total];
+            codigos = new short[total];
+            Arrays.fill(codigos, (short) -1);
+            System.out.printf(Locale.ROOT, "%d requisições a %.0f/s contra %s (mistura %s)%n", total, TAXA, base,
+                    config("cargaMix", "get=60,post=20,patch=15,delete=5"));
+            AtomicInteger pendentes = new AtomicInteger();
+            Random r = new Random();
+            int somaPesos = Arrays.stream(pesos).sum();
+            long inicio = System.nanoTime();
+            for (int k = 0; k < total; k++) {
+                long marcado = inicio + (long) (k * 1e9 / TAXA);
+                for (long espera; (espera = marcado - System.nanoTime()) > 0; ) java.util.concurrent.locks.LockSupport.parkNanos(espera);
+                int sorteio = r.nextInt(somaPesos), op = 0;
+                while (sorteio >= pesos[op]) sorteio -= pesos[op++];
+                operacoes[k] = (byte) op;
+                if (pendentes.get() >= MAX_PENDENTES) continue; // Servidor parado: não acumula threads sem limite
+                pendentes.incrementAndGet();
+                final int pos = k;
+                final int st = r.nextInt(3);
+                threads.execute(() -> {
+                    try {
+                        executar(pos, marcado, st);
+                    } finally {
+                        pendentes.decrementAndGet();
+                    }
+                });
+            }
+            while (pendentes.get() > 0) Thread.sleep(10);
+            return System.nanoTime() - inicio;
+        }
+
+        /**
+         * Executa a requisição da posição pos e atualiza o modelo com o resultado.
+         */
+        private void executar(int pos, long marcado, int st) {
+            int op = operacoes[pos];
+            String id = op == PATCH || op == DELETE ? pegarLivre() : null;
+            if (id == null && (op == PATCH || op == DELETE)) op = operacoes[pos] = POST; // Ainda não há tarefas
+            HttpRequest.Builder b = HttpRequest.newBuilder().timeout(Duration.ofMillis(TIMEOUT_MS));
+            switch (op) {
+                case GET -> b.uri(URI.create(base + "?limit=50&status=" + st)).GET();
+                case POST -> b.uri(URI.create(base)).POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"titulo\":\"Carga " + pos + "\",\"descricao\":\"Criada pelo gerador de carga\"}"));
+                case PATCH -> b.uri(URI.create(base + "/" + id + "/status"))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"status\":" + st + "}"));
+                default -> b.uri(URI.create(base + "/" + id)).DELETE();
+            }
+            int codigo;
+            String corpo = null;
+            try {
+                HttpResponse<String> resp = cliente.send(b.build(), HttpResponse.BodyHandlers.ofString());
+                codigo = resp.statusCode();
+                corpo = resp.body();
+            } catch (IOException | InterruptedException e) {
+                codigo = 0;
+            }
+            latencias[pos] = System.nanoTime() - marcado;
+            codigos[pos] = (short) codigo;
+
+            switch (op) {
+                case POST -> {
+                    int i = corpo == null ? -1 : corpo.indexOf("\"id\":\"");
+                    if (codigo == 200 && i >= 0) {
+                        String novo = corpo.substring(i + 6, corpo.indexOf('"', i + 6));
+                        modelo.put(novo, 0);
+                        devolver(novo);
+                    } else if (codigo == 0) criacoesIncertas.incrementAndGet();
+                }
+                case PATCH -> {
+                    if (codigo == 200) modelo.put(id, st);
+                    if (codigo == 0) incertas.add(id);
+                    else devolver(id); // 404 aparece na conferência: a tarefa continua no modelo
+                }
+                case DELETE -> {
+                    if (codigo == 204) {
+                        modelo.remove(id);
+                        excluidas.add(id);
+                    } else if (codigo == 0) incertas.add(id);
+                    else devolver(id);
+                }
+                default -> { }
+            }
+        }
+
+        private synchronized String pegarLivre() {
+            if (livres.isEmpty()) return null;
+            int i = ThreadLocalRandom.current().nextInt(livres.size());
+            String id = livres.get(i);
+            livres.set(i, livres.get(livres.size() - 1)); // Remoção O(1): a ordem não importa
+            livres.remove(livres.size() - 1);
+            return id;
+        }
+
+        private synchronized void devolver(String id) {
+            livres.add(id);
+        }
+
+        /**
+         * Lê a listagem completa do quadro.
+         * @param atual Recebe ID → status.
+         * @param repetidas Recebe os IDs que aparecem mais de uma vez.
+         */
+        private void listar(Map<String, Integer> atual, List<String> repetidas) throws IOException, InterruptedException {
+            HttpResponse<String> resp = cliente.send(HttpRequest.newBuilder(URI.create(base)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() != 200) throw new IOException("GET " + base + " respondeu " + resp.statusCode());
+            java.util.regex.Matcher m = TAREFA.matcher(resp.body());
+            while (m.find()) {
+                if (atual.put(m.group(1), m.group(2).charAt(0) - '0') != null) repetidas.add(m.group(1));
+            }
+        }
+
+        /**
+         * Confere o quadro contra o modelo.
+         * @param desconhecidas true para acusar tarefas que não são do modelo nem existiam no início.
+         * @return As falhas encontradas.
+         */
+        private List<String> conferir(String momento, boolean desconhecidas) {
+            List<String> falhas = new ArrayList<>();
+            Map<String, Integer> atual = new HashMap<>();
+            List<String> repetidas = new ArrayList<>();
+            try {
+                listar(atual, repetidas);
+            } catch (IOException | InterruptedException e) {
+                falhas.add("listagem " + momento + ": " + e.getMessage());
+                return falhas;
+            }
+            int perdidas = 0, divergentes = 0, devolvidas = 0, estranhas = 0;
+            for (String id : repetidas) falhas.add("tarefa duplicada: " + id);
+            for (Map.Entry<String, Integer> e : modelo.entrySet()) {
+                if (incertas.contains(e.getKey())) continue;
+                Integer st = atual.get(e.getKey());
+                if (st == null) {
+                    perdidas++;
+                    falhas.add("tarefa perdida: " + e.getKey());
+                } else if (!st.equals(e.getValue())) {
+                    divergentes++;
+                    falhas.add("status divergente: " + e.getKey() + " está em " + st + ", esperado " + e.getValue());
+                }
+            }
+            for (String id : excluidas) {
+                if (atual.containsKey(id) && !incertas.contains(id)) {
+                    devolvidas++;
+                    falhas.add("tarefa excluída de volta: " + id);
+                }
+            }
+            for (String id : atual.keySet()) {
+                if (!modelo.containsKey(id) && !excluidas.contains(id) && !incertas.contains(id) && !iniciais.contains(id)) estranhas++;
+            }
+            if (desconhecidas && estranhas > criacoesIncertas.get())
+                falhas.add(estranhas + " tarefas desconhecidas (só " + criacoesIncertas.get() + " criações sem resposta)");
+            System.out.printf("Conferência %s: %d tarefas no quadro, %d no modelo, %d perdidas, %d duplicadas, %d com status divergente, "
+                            + "%d excluídas de volta, %d desconhecidas, %d incertas%n", momento, atual.size(), modelo.size(),
+                    perdidas, repetidas.size(), divergentes, devolvidas, estranhas, incertas.size() + criacoesIncertas.get());
+            return falhas;
+        }
+
+        /**
+         * Imprime a vazão e as latências por operação e grava o resumo em JSON.
+         */
+        private void gravar(Path saida, long ns, int falhas) throws IOException {
+            List<String> linhas = new ArrayList<>();
+            long concluidas = 0;
+            System.out.printf("%-8s %9s %9s %8s %10s %10s %10s %10s%n", "operação", "enviadas", "ok", "erros",
+                    "p50 ms", "p99 ms", "p999 ms", "máx ms");
+            for (int op = -1; op < OPERACOES.length; op++) {
+                long[] l = new long[latencias.length];
+                int n = 0, ok = 0, erros = 0, naoEnviadas = 0;
+                Map<Integer, Integer> porCodigo = new TreeMap<>();
+                for (int k = 0; k < latencias.length; k++) {
+                    if (op >= 0 && operacoes[k] != op) continue;
+                    if (codigos[k] < 0) {
+                        naoEnviadas++;
+                        continue;
+                    }
+                    l[n++] = latencias[k];
+                    porCodigo.merge((int) codigos[k], 1, Integer::sum);
+                    if (codigos[k] >= 200 && codigos[k] < 300) ok++;
+                    else erros++;
+                }
+                if (op < 0) concluidas = n;
+                if (n == 0 && naoEnviadas == 0) continue;
+                Arrays.sort(l, 0, n);
+                String nome = op < 0 ? "total" : OPERACOES[op];
+                double p50 = percentil(l, n, 0.5), p99 = percentil(l, n, 0.99), p999 = percentil(l, n, 0.999),
+                        max = n == 0 ? 0 : l[n - 1] / 1e6;
+                System.out.printf(Locale.ROOT, "%-8s %9d %9d %8d %10.2f %10.2f %10.2f %10.2f%n", nome, n, ok, erros + naoEnviadas,
+                        p50, p99, p999, max);
+                StringBuilder codigosJson = new StringBuilder();
+                porCodigo.forEach((c, q) -> codigosJson.append(codigosJson.length() > 0 ? "," : "").append('"').append(c).append("\":").append(q));
+                linhas.add(String.format(Locale.ROOT, "{\"operacao\":\"%s\",\"enviadas\":%d,\"naoEnviadas\":%d,\"ok\":%d,\"erros\":%d,"
+                                + "\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f,\"codigos\":{%s}}",
+                        nome, n, naoEnviadas, ok, erros, p50, p99, p999, max, codigosJson));
+            }
+            double vazao = concluidas * 1e9 / Math.max(1, ns);
+            System.out.printf(Locale.ROOT, "Vazão: %.1f req/s (alvo %.0f/s) em %.1f s%n", vazao, TAXA, ns / 1e9);
+            String json = String.format(Locale.ROOT, "{\"url\":\"%s\",\"taxaAlvo\":%.1f,\"vazao\":%.1f,\"segundos\":%.3f,\"falhas\":%d,%n\"operacoes\":[%n%s%n]}%n",
+                    jsonEsc(base), TAXA, vazao, ns / 1e9, falhas, String.join(",\n", linhas));
+            Files.write(saida, json.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Resultados gravados em " + saida);
+        }
+
+        /**
+         * @return O percentil p das n primeiras latências (ordenadas), em ms.
+         */
+        private static double percentil(long[] l, int n, double p) {
+            return n == 0 ? 0 : l[(int) Math.min(n - 1, (long) Math.ceil(p * n) - 1)] / 1e6;
+        }
+
+        /**
+         * Grava o modelo ("id;status", status -1 para as excluídas) para a próxima execução conferir.
+         */
+        private void gravarModelo(Path p) throws IOException {
+            StringBuilder sb = new StringBuilder("id;status\n");
+            modelo.forEach((id, st) -> {
+                if (!incertas.contains(id)) sb.append(id).append(';').append(st).append('\n');
+            });
+            for (String id : excluidas) sb.append(id).append(";-1\n");
+            Files.write(p, sb.toString().getBytes(StandardCharsets.UTF_8));
+            System.out.println("Modelo gravado em " + p);
+        }
+    }
+
     /**
      * Manipulador HTTP para a rota raiz ("/").
-     * Serve o arquivo HTML principal da aplicação (Kanban).
+     * Serve o arquivo HTML principal da aplicação (Kanban). A página não muda durante a execução, então
+     * os bytes (puros e em gzip) e os ETags são calculados uma única vez; o navegador guarda a página e
+     * revalida com If-None-Match, recebendo 304 sem corpo enquanto o conteúdo for o mesmo. Cada codificação
+     * tem seu próprio ETag forte, já que os bytes são diferentes.
      */
     static class RootHandler implements HttpHandler {
+        static final byte[] PAGINA = INDEX_HTML.getBytes(StandardCharsets.UTF_8);
+        static final byte[] PAGINA_GZIP = gzip(PAGINA, Deflater.BEST_COMPRESSION);
+        // Derivado do conteúdo, e não da época: continua válido depois de reiniciar o servidor
+        static final String ETAG = "\"p" + crc(INDEX_HTML) + "\"";
+        static final String ETAG_GZIP = "\"p" + crc(INDEX_HTML) + SUFIXO_GZIP + "\"";
+
         @Override
         public void handle(HttpExchange ex) throws IOException {
             // Verifica se o método da requisição é GET
@@ -60,10 +982,24 @@ public class App {
                 send(ex, 405, ""); // Retorna 405 Method Not Allowed se não for GET
                 return;
             }
-            // Obtém o conteúdo HTML da constante INDEX_HTML
-            byte[] body = INDEX_HTML.getBytes(StandardCharsets.UTF_8);
+            Headers h = ex.getResponseHeaders();
+            boolean comprimir = aceitaGzip(ex);
+            String etag = comprimir ? ETAG_GZIP : ETAG;
+            h.set("ETag", etag);
+            h.set("Cache-Control", "no-cache"); // A página não tem versão na URL: guarda, mas sempre revalida
+            h.set("Vary", "Accept-Encoding");
+            if (etagCorresponde(ex.getRequestHeaders().getFirst("If-None-Match"), ETAG)) {
+                ex.sendResponseHeaders(304, -1); // Não mudou: sem corpo
+                ex.close();
+                return;
+            }
             // Define o cabeçalho Content-Type como HTML
-            ex.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            h.set("Content-Type", "text/html; charset=utf-8");
+            byte[] body = PAGINA;
+            if (comprimir) {
+                body = PAGINA_GZIP;
+                h.set("Content-Encoding", "gzip");
+            }
             // Envia os cabeçalhos da resposta com status 200 OK e o tamanho do corpo
             ex.sendResponseHeaders(200, body.length);
             // Escreve o corpo da resposta
@@ -74,7 +1010,8 @@ public class App {
     }
 
     /**
-     * Manipulador HTTP para a API de tarefas ("/api/tasks").
+     * Manipulador HTTP para a API de tarefas: "/api/tasks" no quadro padrão e "/api/boards/{quadro}/tasks"
+     * nos demais, com as mesmas rotas. GET /api/boards lista os quadros.
      * Gerencia as operações CRUD (Criar, Ler, Atualizar, Deletar) de tarefas.
      */
     static class ApiTasksHandler implements HttpHandler {
@@ -85,325 +1022,5730 @@ public class App {
             String path = uri.getPath(); // Obtém o caminho da requisição
 
             try {
-                // GET /api/tasks: Lista todas as tarefas
-                if ("GET".equals(method) && "/api/tasks".equals(path)) {
-                    sendJson(ex, 200, listarJSON()); // Retorna a lista de tarefas em formato JSON
+                // Separa o quadro e o caminho dentro dele ("/api/tasks/..." ou "/api/boards/{quadro}/tasks/...")
+                if (path.startsWith("/api/tasks")) {
+                    tarefas(ex, method, uri, PADRAO, path.substring("/api".length()));
+                    return;
+                }
+                if ("GET".equals(method) && ("/api/boards".equals(path) || "/api/boards/".equals(path))) {
+                    sendJson(ex, 200, quadros.listarJSON()); // Quadros em disco e carregados
+                    return;
+                }
+                int b = path.indexOf('/', "/api/boards/".length());
+                if (!path.startsWith("/api/boards/") || b < 0 || !path.startsWith("/tasks", b)) {
+                    send(ex, 404, "");
+                    return;
+                }
+                String nome = path.substring("/api/boards/".length(), b);
+                if (!Quadros.nomeValido(nome)) {
+                    sendJson(ex, 400, "{\"error\":\"nome de quadro inválido (a-z, 0-9, _ e -, até 64)\"}");
+                    return;
+                }
+                Quadro q = quadros.obter(nome); // Carrega o quadro no primeiro acesso
+                try {
+                    tarefas(ex, method, uri, q, path.substring(b));
+                } finally {
+                    quadros.liberar(q, !"GET".equals(method));
+                }
+            } catch (CapacidadeExcedidaException e) {
+                // Contrapressão: o limite configurado foi atingido, a tarefa não foi criada
+                sendJson(ex, 507, "{\"error\":\"capacidade excedida\",\"detalhe\":\"" + jsonEsc(e.getMessage()) + "\"}");
+            } catch (CorpoExcedidoException e) {
+                ex.getResponseHeaders().set("Connection", "close"); // O restante do corpo não foi lido
+                sendJson(ex, 413, "{\"error\":\"" + jsonEsc(e.getMessage()) + "\"}");
+            } catch (IllegalArgumentException e) {
+                sendJson(ex, 400, "{\"error\":\"" + jsonEsc(e.getMessage()) + "\"}"); // JSON malformado
+            } catch (Exception e) {
+                Metricas.EXCECOES.increment();
+                e.printStackTrace(); // Imprime o stack trace do erro
+                sendJson(ex, 500, "{\"error\":\"server\"}"); // Retorna 500 Internal Server Error
+            }
+        }
+
+        /**
+         * Atende as rotas de tarefas de um quadro.
+         * @param q O quadro, já carregado.
+         * @param rota O caminho a partir de "/tasks" ("/tasks", "/tasks/search", "/tasks/{id}/status"...).
+         */
+        private static void tarefas(HttpExchange ex, String method, URI uri, Quadro q, String rota) throws IOException {
+            // GET /api/tasks: Lista todas as tarefas (ou uma página filtrada, se houver parâmetros)
+            if ("GET".equals(method) && "/tasks".equals(rota)) {
+                Map<String, String> p = parseQuery(uri.getRawQuery());
+                if (p.isEmpty()) q.responderLista(ex); // Retorna a lista de tarefas em JSON (cache por versão, ETag/304)
+                else q.responderConsulta(ex, p); // Retorna a página pedida usando os índices por status
+                return;
+            }
+
+            // GET /api/tasks/stats: Estatísticas do quadro, sem percorrer as tarefas
+            if ("GET".equals(method) && "/tasks/stats".equals(rota)) {
+                q.responderEstatisticas(ex, parseQuery(uri.getRawQuery()));
+                return;
+            }
+
+            // GET /api/tasks/search: Busca textual nos títulos e descrições, em ordem de relevância
+            if ("GET".equals(method) && "/tasks/search".equals(rota)) {
+                q.responderBusca(ex, parseQuery(uri.getRawQuery()));
+                return;
+            }
+
+            // GET /api/tasks/events: Feed de mudanças (Server-Sent Events), retomável por Last-Event-ID
+            if ("GET".equals(method) && "/tasks/events".equals(rota)) {
+                q.assinarEventos(ex, parseQuery(uri.getRawQuery()).get("desde"));
+                return;
+            }
+
+            // POST /api/tasks: Cria uma nova tarefa
+            if ("POST".equals(method) && "/tasks".equals(rota)) {
+                Campos c = JsonReader.corpo(ex, JsonReader.MAX_CORPO).objeto(); // Lê o corpo e extrai os campos em uma passada
+                String titulo = c.titulo;
+                String descricao = c.descricao;
+                // Valida se o título é obrigatório
+                if (titulo == null || titulo.isBlank()) {
+                    sendJson(ex, 400, "{\"error\":\"titulo obrigatório\"}"); // Retorna erro 400 se o título estiver ausente
+                    return;
+                }
+                // Cria a tarefa e registra a criação no log
+                Map<String, Object> t = q.criarTarefa(titulo, descricao == null ? "" : descricao);
+                sendJson(ex, 200, toJsonTask(t)); // Retorna a tarefa criada em JSON
+                return;
+            }
+
+            // POST /api/tasks/batch: Aplica um lote de operações de uma só vez (uma trava, um fsync)
+            if ("POST".equals(method) && "/tasks/batch".equals(rota)) {
+                List<Campos> lista;
+                try {
+                    lista = JsonReader.corpo(ex, JsonReader.MAX_LOTE).lote();
+                } finally {
+                    JsonReader.liberar(); // A thread não segura o buffer do lote até a próxima requisição
+                }
+                ByteArrayOutputStream corpo = new ByteArrayOutputStream(lista.size() * 128 + 64);
+                JsonWriter w = new JsonWriter(corpo, BUFFER_JSON);
+                int codigo = q.aplicarLote(lista, w);
+                w.flush();
+                sendJson(ex, codigo, corpo.toByteArray());
+                return;
+            }
+
+            // PATCH /api/tasks/{id}/status: Atualiza o status de uma tarefa
+            if ("PATCH".equals(method) && rota.startsWith("/tasks/") && rota.endsWith("/status")) {
+                // Extrai o ID da tarefa do caminho da URL
+                String id = rota.substring("/tasks/".length(), rota.length() - "/status".length());
+                Campos c = JsonReader.corpo(ex, JsonReader.MAX_CORPO).objeto(); // Lê o corpo e extrai o status
+                // Valida se o status está presente
+                if (!c.temStatus) {
+                    sendJson(ex, 400, "{\"error\":\"status ausente\"}");
+                    return;
+                }
+                int st = clampStatus(c.status); // Valida o status
+                Map<String, Object> t = q.moverTarefa(id, st); // Atualiza o status e registra no log
+                // Verifica se a tarefa foi encontrada
+                if (t == null) {
+                    sendJson(ex, 404, "{\"error\":\"not found\"}"); // Retorna 404 Not Found
+                    return;
+                }
+                sendJson(ex, 200, toJsonTask(t)); // Retorna a tarefa atualizada em JSON
+                return;
+            }
+
+            // DELETE /api/tasks/{id}: Exclui uma tarefa
+            if ("DELETE".equals(method) && rota.startsWith("/tasks/")) {
+                String id = rota.substring("/tasks/".length()); // Extrai o ID da tarefa do caminho da URL
+                // Remove a tarefa e registra a exclusão no log; verifica se a tarefa foi encontrada
+                if (!q.excluirTarefa(id)) {
+                    sendJson(ex, 404, "{\"error\":\"not found\"}"); // Retorna 404 Not Found
+                    return;
+                }
+                sendJson(ex, 204, ""); // Retorna 204 No Content para indicar sucesso sem conteúdo
+                return;
+            }
+
+            send(ex, 404, ""); // Retorna 404 Not Found para rotas não mapeadas
+        }
+    }
+
+    /**
+     * Executor das requisições HTTP, escolhido na inicialização por kanban.executor:
+     * <ul>
+     *   <li>"padrao": a thread de despacho do HttpServer atende todas as requisições (comportamento original);</li>
+     *   <li>"virtual": uma thread virtual por requisição (Java 21+; em versões anteriores, uma thread de
+     *   plataforma por requisição);</li>
+     *   <li>"pool": pool limitado de kanban.threads threads com fila de kanban.fila posições; com a fila cheia,
+     *   a requisição é respondida com 503 pelo {@link FiltroSobrecarga} nas threads "kanban-recusa-" (duas,
+     *   com fila de FILA_RECUSA), nunca na thread de despacho; um cliente lento prende uma delas por no máximo
+     *   kanban.tempoRequisicao. Se também a fila de recusa está cheia, a conexão é fechada sem resposta.</li>
+     * </ul>
+     * Em todos os modos mede a profundidade da fila (aceitas e ainda não iniciadas) e as requisições em andamento.
+     * As contagens são de tarefas entregues pelo HttpServer, o que inclui a leitura do fechamento de conexões.
+     */
+    static final class RequestExecutor implements Executor {
+        /** Marca a requisição recusada pelo pool, para que o filtro responda 503 sem chamar o manipulador. */
+        static final ThreadLocal<Boolean> SOBRECARGA = new ThreadLocal<>();
+
+        static final int FILA_RECUSA = 64; // Requisições recusadas aguardando o 503; além disso a conexão é fechada
+
+        final String modo; // Modo efetivo
+        private final Executor destino; // null = executa na thread chamadora
+        // Responde 503 às recusadas pelo pool (só no modo pool): ler a requisição pode bloquear, e não deve
+        // ser na thread de despacho do HttpServer
+        private final ThreadPoolExecutor recusa;
+        private final int threads, capacidadeFila; // Dimensões do pool (0 quando não se aplicam)
+        private final AtomicInteger naFila = new AtomicInteger(); // Aceitas e ainda não iniciadas
+        private final AtomicInteger emAndamento = new AtomicInteger(); // Sendo atendidas agora
+        private final AtomicInteger picoFila = new AtomicInteger(); // Maior profundidade de fila observada
+        private final LongAdder recebidas = new LongAdder(), concluidas = new LongAdder(), rejeitadas = new LongAdder();
+        private final LongAdder descartadas = new LongAdder(); // Recusadas sem 503: conexão fechada
+
+        private RequestExecutor(String modo, Executor destino, int threads, int capacidadeFila) {
+            this.modo = modo;
+            this.destino = destino;
+            this.threads = threads;
+            this.capacidadeFila = capacidadeFila;
+            this.recusa = destino instanceof ThreadPoolExecutor ? new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(FILA_RECUSA), fabrica("kanban-recusa-"), new ThreadPoolExecutor.AbortPolicy()) : null;
+        }
+
+        /**
+         * Cria o executor a partir da configuração (kanban.executor, kanban.threads, kanban.fila).
+         * @return O executor configurado.
+         */
+        static RequestExecutor configurado() {
+            String modo = config("executor", "padrao").toLowerCase(Locale.ROOT);
+            switch (modo) {
+                case "virtual" -> {
+                    try {
+                        Executor v = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                        return new RequestExecutor("virtual", v, 0, 0);
+                    } catch (ReflectiveOperationException e) {
+                        System.out.println("Threads virtuais exigem Java 21+; usando uma thread de plataforma por requisição");
+                        return new RequestExecutor("thread-por-requisicao", Executors.newCachedThreadPool(fabrica("kanban-http-")), 0, 0);
+                    }
+                }
+                case "pool" -> {
+                    int threads = parseIntSafe(config("threads", ""), Math.max(4, Runtime.getRuntime().availableProcessors() * 4));
+                    int fila = parseIntSafe(config("fila", ""), 256);
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(Math.max(1, fila)), fabrica("kanban-http-"), new ThreadPoolExecutor.AbortPolicy());
+                    return new RequestExecutor("pool", pool, threads, fila);
+                }
+                default -> {
+                    if (!"padrao".equals(modo)) System.out.println("kanban.executor desconhecido: " + modo + "; usando padrao");
+                    return new RequestExecutor("padrao", null, 1, 0);
+                }
+            }
+        }
+
+        private static ThreadFactory fabrica(String prefixo) {
+            AtomicInteger seq = new AtomicInteger();
+            return r -> {
+                Thread t = new Thread(r, prefixo + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+        }
+
+        @Override
+        public void execute(Runnable r) {
+            recebidas.increment();
+            picoFila.accumulateAndGet(naFila.incrementAndGet(), Math::max);
+            Runnable medido = () -> {
+                naFila.decrementAndGet();
+                emAndamento.incrementAndGet();
+                try {
+                    r.run();
+                } finally {
+                    emAndamento.decrementAndGet();
+                    concluidas.increment();
+                }
+            };
+            if (destino == null) {
+                medido.run(); // Modo padrão: atende na própria thread de despacho
+                return;
+            }
+            try {
+                destino.execute(medido);
+            } catch (RejectedExecutionException e) {
+                // Pool saturado: o 503 sai pelas threads de recusa, sem chamar o manipulador. A requisição ainda
+                // precisa ser lida, e um cliente lento prenderia a thread de despacho do HttpServer; aqui ele
+                // prende uma thread de recusa por no máximo kanban.tempoRequisicao, quando a conexão é fechada
+                naFila.decrementAndGet();
+                try {
+                    recusa.execute(() -> {
+                        SOBRECARGA.set(Boolean.TRUE);
+                        try {
+                            r.run();
+                        } finally {
+                            SOBRECARGA.remove();
+                        }
+                    });
+                    rejeitadas.increment();
+                } catch (RejectedExecutionException e2) {
+                    // Nem a fila de recusa tem espaço: propaga, e o HttpServer fecha a conexão na hora
+                    descartadas.increment();
+                    throw e2;
+                }
+            }
+        }
+
+        /**
+         * @return Quantidade de requisições aceitas aguardando uma thread.
+         */
+        int naFila() {
+            return naFila.get();
+        }
+
+        /**
+         * @return As métricas do executor em JSON.
+         */
+        String metricasJSON() {
+            return "{\"modo\":\"" + modo + "\",\"threads\":" + threads + ",\"capacidadeFila\":" + capacidadeFila
+                    + ",\"naFila\":" + naFila.get() + ",\"picoFila\":" + picoFila.get()
+                    + ",\"emAndamento\":" + emAndamento.get() + ",\"recebidas\":" + recebidas.sum()
+                    + ",\"concluidas\":" + concluidas.sum() + ",\"rejeitadas\":" + rejeitadas.sum()
+                    + ",\"descartadas\":" + descartadas.sum() + "}";
+        }
+
+        /**
+         * Escreve as métricas do executor no formato texto do Prometheus.
+         */
+        void escreverMetricas(StringBuilder sb) {
+            String modoRotulo = "modo=\"" + modo + "\"";
+            Metricas.cabecalho(sb, "kanban_executor_fila", "gauge", "Requisições aceitas e ainda não iniciadas");
+            Metricas.linha(sb, "kanban_executor_fila", modoRotulo, naFila.get());
+            Metricas.cabecalho(sb, "kanban_executor_fila_pico", "gauge", "Maior profundidade de fila observada");
+            Metricas.linha(sb, "kanban_executor_fila_pico", modoRotulo, picoFila.get());
+            Metricas.cabecalho(sb, "kanban_executor_fila_capacidade", "gauge", "Capacidade da fila (0 = sem fila)");
+            Metricas.linha(sb, "kanban_executor_fila_capacidade", modoRotulo, capacidadeFila);
+            Metricas.cabecalho(sb, "kanban_executor_em_andamento", "gauge", "Requisições sendo atendidas agora");
+            Metricas.linha(sb, "kanban_executor_em_andamento", modoRotulo, emAndamento.get());
+            Metricas.cabecalho(sb, "kanban_executor_tarefas_total", "counter", "Tarefas entregues ao executor pelo HttpServer");
+            Metricas.linha(sb, "kanban_executor_tarefas_total", modoRotulo + ",estado=\"recebida\"", recebidas.sum());
+            Metricas.linha(sb, "kanban_executor_tarefas_total", modoRotulo + ",estado=\"concluida\"", concluidas.sum());
+            Metricas.linha(sb, "kanban_executor_tarefas_total", modoRotulo + ",estado=\"rejeitada\"", rejeitadas.sum());
+            Metricas.linha(sb, "kanban_executor_tarefas_total", modoRotulo + ",estado=\"descartada\"", descartadas.sum());
+        }
+    }
+
+    /**
+     * Filtro que responde 503 Service Unavailable às requisições recusadas pelo pool saturado.
+     */
+    static final class FiltroSobrecarga extends Filter {
+        @Override
+        public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+            if (Boolean.TRUE.equals(RequestExecutor.SOBRECARGA.get())) {
+                ex.getResponseHeaders().set("Retry-After", "1"); // Sugere nova tentativa em 1 segundo
+                sendJson(ex, 503, "{\"error\":\"servidor sobrecarregado\"}");
+                return;
+            }
+            chain.doFilter(ex);
+        }
+
+        @Override
+        public String description() {
+            return "Responde 503 quando o pool de requisições está cheio";
+        }
+    }
+
+    /**
+     * Filtro do modo seguidor: a réplica só atende leituras; as demais requisições recebem 307 com a
+     * mesma rota no primário (kanban.primario), que preserva o método e o corpo.
+     */
+    static final class FiltroSeguidor extends Filter {
+        @Override
+        public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+            String m = ex.getRequestMethod();
+            if ("GET".equals(m) || "HEAD".equals(m)) {
+                chain.doFilter(ex);
+                return;
+            }
+            ex.getResponseHeaders().set("Location", PRIMARIO + ex.getRequestURI().getRawPath()
+                    + (ex.getRequestURI().getRawQuery() == null ? "" : "?" + ex.getRequestURI().getRawQuery()));
+            sendJson(ex, 307, "{\"error\":\"réplica somente leitura: use o primário\",\"primario\":\"" + jsonEsc(PRIMARIO) + "\"}");
+        }
+
+        @Override
+        public String description() {
+            return "Redireciona as escritas para o primário (modo seguidor)";
+        }
+    }
+
+    /**
+     * Histograma de durações no estilo HDR: faixas log-lineares em microssegundos, com 4 subfaixas por
+     * potência de 2 (erro relativo de no máximo 25%) de 1 µs até 2^26 µs (~67 s), mais uma faixa de estouro.
+     * Cada faixa é um LongAdder: registrar é um incremento sem disputa entre threads, sem travas e sem
+     * alocação, e o custo fica todo na leitura (rara) feita pelo /metrics.
+     */
+    static final class Histograma {
+        private static final int SUB_BITS = 2, SUB = 1 << SUB_BITS; // Subfaixas por potência de 2
+        private static final int MAX_BITS = 26; // Faixas até 2^26 µs
+        static final int FAIXAS = SUB + (MAX_BITS - SUB_BITS) * SUB; // A última posição é o estouro
+        private static final String[] LIMITES = new String[FAIXAS]; // Limite superior de cada faixa, em segundos
+        // Faixas publicadas: as que terminam em 2^k e 1,5 * 2^k µs (duas por potência de 2), sempre as mesmas
+        private static final int[] PUBLICADAS = IntStream.range(0, FAIXAS)
+                .filter(f -> f < SUB || (f - SUB) % SUB % 2 == 1).toArray();
+
+        static {
+            for (int f = 0; f < FAIXAS; f++) LIMITES[f] = String.format(Locale.ROOT, "%.6f", limiteMicros(f) / 1e6);
+        }
+
+        private final LongAdder[] contagens = new LongAdder[FAIXAS + 1];
+        private final LongAdder somaNs = new LongAdder();
+
+        Histograma() {
+            for (int f = 0; f < contagens.length; f++) contagens[f] = new LongAdder();
+        }
+
+        /**
+         * @return A faixa de um valor em microssegundos (FAIXAS para o estouro).
+         */
+        static int faixa(long micros) {
+            if (micros < SUB) return (int) Math.max(0, micros);
+            int msb = 63 - Long.numberOfLeadingZeros(micros);
+            if (msb >= MAX_BITS) return FAIXAS;
+            return SUB + (msb - SUB_BITS) * SUB + (int) (micros >>> (msb - SUB_BITS)) - SUB;
+        }
+
+        /**
+         * @return O limite superior da faixa, em µs: as durações registradas nela (truncadas para µs) são
+         *         todas menores que ele.
+         */
+        static long limiteMicros(int f) {
+            if (f < SUB) return f + 1;
+            int oitava = (f - SUB) / SUB, sub = (f - SUB) % SUB;
+            return (long) (SUB + sub + 1) << oitava;
+        }
+
+        /**
+         * Registra uma duração.
+         */
+        void registrar(long nanos) {
+            contagens[faixa(nanos / 1000)].increment();
+            somaNs.add(nanos);
+        }
+
+        /**
+         * Escreve o histograma no formato texto do Prometheus. As faixas saem acumuladas, com a mesma escala
+         * de limites (PUBLICADAS, inclusive as vazias) em todas as séries e coletas, para que possam ser
+         * somadas e comparadas; as faixas internas entre dois limites publicados entram no limite seguinte.
+         * @param nome Nome da métrica (sem sufixo).
+         * @param rotulos Rótulos já formatados ("chave=\"valor\"", ou vazio).
+         */
+        void escrever(StringBuilder sb, String nome, String rotulos) {
+            String sep = rotulos.isEmpty() ? "" : ",";
+            long acumulado = 0;
+            int f = 0;
+            for (int p : PUBLICADAS) {
+                while (f <= p) acumulado += contagens[f++].sum();
+                sb.append(nome).append("_bucket{").append(rotulos).append(sep).append("le=\"").append(LIMITES[p])
+                        .append("\"} ").append(acumulado).append('\n');
+            }
+            while (f < contagens.length) acumulado += contagens[f++].sum();
+            sb.append(nome).append("_bucket{").append(rotulos).append(sep).append("le=\"+Inf\"} ").append(acumulado).append('\n');
+            sb.append(nome).append("_sum");
+            if (!rotulos.isEmpty()) sb.append('{').append(rotulos).append('}');
+            sb.append(' ').append(String.format(Locale.ROOT, "%.6f", somaNs.sum() / 1e9)).append('\n');
+            Metricas.linha(sb, nome + "_count", rotulos, acumulado);
+        }
+    }
+
+    /**
+     * Métricas da aplicação, expostas em GET /metrics no formato texto do Prometheus.
+     * Os contadores são LongAdder (células por thread, somadas só na leitura), para que a instrumentação
+     * não vire ponto de disputa entre as threads que atendem requisições.
+     */
+    static final class Metricas {
+        private static final String[] METODOS = {"GET", "POST", "PATCH", "DELETE", "PUT", "HEAD", "OPTIONS"};
+
+        /**
+         * Contadores de uma rota: duração das requisições e respostas por código de status.
+         */
+        static final class Rota {
+            final Histograma duracao = new Histograma();
+            final AtomicReferenceArray<LongAdder> porStatus = new AtomicReferenceArray<>(600);
+            final LongAdder semResposta = new LongAdder(); // Terminaram sem enviar cabeçalhos (exceção, conexão caída)
+
+            void registrar(int status, long nanos) {
+                duracao.registrar(nanos);
+                if (status < 100 || status >= 600) {
+                    semResposta.increment();
+                    return;
+                }
+                LongAdder c = porStatus.get(status);
+                if (c == null) {
+                    porStatus.compareAndSet(status, null, new LongAdder());
+                    c = porStatus.get(status);
+                }
+                c.increment();
+            }
+        }
+
+        static final ConcurrentHashMap<String, Rota> ROTAS = new ConcurrentHashMap<>();
+        static final LongAdder EXCECOES = new LongAdder(); // Erros inesperados (500) nos manipuladores
+        static final Histograma GRAVACAO_SNAPSHOT = new Histograma(); // salvar() e compactação do log
+        static final Histograma GRAVACAO_LOG = new Histograma(); // write + fsync de cada lote do log
+        static final Histograma CARGA_QUADRO = new Histograma(); // carregar() de cada quadro, inclusive os sob demanda
+        static volatile long cargaNs = -1; // Duração de carregar() do quadro padrão na inicialização
+        static volatile int cargaTarefas, cargaLogs;
+
+        /**
+         * Nome da rota com os IDs trocados por {id}, para manter poucas séries por métrica.
+         */
+        static String rota(String metodo, String caminho) {
+            String m = "OUTRO";
+            for (String c : METODOS) {
+                if (c.equals(metodo)) m = c;
+            }
+            String quadro = "";
+            if (caminho.startsWith("/api/boards/")) {
+                // /api/boards/{quadro}/tasks...: mesma rota de /api/tasks..., com o nome do quadro trocado
+                int b = caminho.indexOf('/', "/api/boards/".length());
+                if (b < 0 || !caminho.startsWith("/tasks", b)) return m + " outras";
+                quadro = "/api/boards/{quadro}";
+                caminho = "/api" + caminho.substring(b);
+            } else if (caminho.equals("/api/boards")) {
+                return m + " " + caminho;
+            }
+            String r;
+            if (caminho.equals("/") || caminho.equals("/api/tasks") || caminho.equals("/api/tasks/events")
+                    || caminho.equals("/api/tasks/batch") || caminho.equals("/api/tasks/search")
+                    || caminho.equals("/api/tasks/stats") || caminho.equals("/api/executor") || caminho.equals("/api/replication")
+                    || caminho.equals("/metrics")) {
+                r = caminho;
+            } else if (caminho.startsWith("/api/tasks/")) {
+                r = caminho.endsWith("/status") ? "/api/tasks/{id}/status" : "/api/tasks/{id}";
+            } else {
+                r = "outras";
+            }
+            if (!quadro.isEmpty() && r.startsWith("/api/tasks")) r = quadro + r.substring("/api".length());
+            return m + " " + r;
+        }
+
+        /**
+         * Registra uma requisição atendida.
+         * @param status O código enviado, ou -1 se a resposta não chegou a ser enviada.
+         */
+        static void registrar(String metodo, String caminho, int status, long nanos) {
+            ROTAS.computeIfAbsent(rota(metodo, caminho), k -> new Rota()).registrar(status, nanos);
+        }
+
+        /**
+         * @return Todas as métricas no formato texto do Prometheus (versão 0.0.4).
+         */
+        static String texto() {
+            StringBuilder sb = new StringBuilder(16 << 10);
+            List<Map.Entry<String, Rota>> rotas = new ArrayList<>(ROTAS.entrySet());
+            rotas.sort(Map.Entry.comparingByKey());
+
+            cabecalho(sb, "kanban_http_requisicao_segundos", "histogram", "Duração das requisições HTTP por rota");
+            for (Map.Entry<String, Rota> e : rotas) {
+                e.getValue().duracao.escrever(sb, "kanban_http_requisicao_segundos", "rota=\"" + e.getKey() + "\"");
+            }
+            cabecalho(sb, "kanban_http_respostas_total", "counter",
+                    "Respostas por rota e código de status (erros: status >= 400; \"nenhum\" = sem resposta)");
+            for (Map.Entry<String, Rota> e : rotas) {
+                Rota r = e.getValue();
+                for (int s = 100; s < 600; s++) {
+                    LongAdder c = r.porStatus.get(s);
+                    if (c != null) linha(sb, "kanban_http_respostas_total", "rota=\"" + e.getKey() + "\",status=\"" + s + "\"", c.sum());
+                }
+                long sem = r.semResposta.sum();
+                if (sem > 0) linha(sb, "kanban_http_respostas_total", "rota=\"" + e.getKey() + "\",status=\"nenhum\"", sem);
+            }
+            cabecalho(sb, "kanban_http_excecoes_total", "counter", "Erros inesperados nos manipuladores (respondidos com 500)");
+            linha(sb, "kanban_http_excecoes_total", "", EXCECOES.sum());
+
+            if (executor != null) executor.escreverMetricas(sb);
+
+            cabecalho(sb, "kanban_snapshot_gravacao_segundos", "histogram", "Duração da gravação do snapshot (salvar e compactação)");
+            GRAVACAO_SNAPSHOT.escrever(sb, "kanban_snapshot_gravacao_segundos", "");
+            cabecalho(sb, "kanban_log_gravacao_segundos", "histogram", "Duração de write + fsync de cada lote do log");
+            GRAVACAO_LOG.escrever(sb, "kanban_log_gravacao_segundos", "");
+            if (cargaNs >= 0) {
+                cabecalho(sb, "kanban_carga_segundos", "gauge", "Duração da carga do quadro na inicialização (snapshot e logs)");
+                sb.append("kanban_carga_segundos ").append(String.format(Locale.ROOT, "%.6f", cargaNs / 1e9)).append('\n');
+                cabecalho(sb, "kanban_carga_tarefas", "gauge", "Tarefas lidas do snapshot na inicialização");
+                linha(sb, "kanban_carga_tarefas", "", cargaTarefas);
+                cabecalho(sb, "kanban_carga_logs", "gauge", "Logs reaplicados na inicialização");
+                linha(sb, "kanban_carga_logs", "", cargaLogs);
+            }
+
+            cabecalho(sb, "kanban_quadro_carga_segundos", "histogram", "Duração da carga de cada quadro (snapshot e logs)");
+            CARGA_QUADRO.escrever(sb, "kanban_quadro_carga_segundos", "");
+            List<Quadro> carregados = quadros.carregados();
+            carregados.sort(Comparator.comparing(q -> q.nome));
+            cabecalho(sb, "kanban_quadros_carregados", "gauge", "Quadros em memória");
+            linha(sb, "kanban_quadros_carregados", "", carregados.size());
+            cabecalho(sb, "kanban_quadros_descarregados_total", "counter", "Quadros descarregados para respeitar kanban.quadrosMemoriaMb");
+            linha(sb, "kanban_quadros_descarregados_total", "", quadros.descarregados.sum());
+            cabecalho(sb, "kanban_quadros_bytes_limite", "gauge", "Orçamento de memória estimada dos quadros carregados (kanban.quadrosMemoriaMb)");
+            linha(sb, "kanban_quadros_bytes_limite", "", quadros.limiteBytes);
+            cabecalho(sb, "kanban_tarefas_bytes_limite", "gauge", "Limite de memória estimada de cada quadro (kanban.maxMemoriaMb)");
+            linha(sb, "kanban_tarefas_bytes_limite", "", MAX_MEMORIA);
+
+            long[][] porQuadro = new long[carregados.size()][];
+            for (int k = 0; k < porQuadro.length; k++) {
+                TaskStore tarefas = carregados.get(k).tarefas;
+                WriteAheadLog wal = carregados.get(k).wal;
+                porQuadro[k] = tarefas.ler(() -> new long[] {tarefas.contar(0), tarefas.contar(1), tarefas.contar(2), tarefas.bytes(),
+                        tarefas.termosBusca(), tarefas.pendentesBusca(), wal == null ? 0 : wal.tamanho()});
+            }
+            cabecalho(sb, "kanban_tarefas", "gauge", "Tarefas no quadro por status (0: TODO, 1: DOING, 2: DONE)");
+            for (int k = 0; k < porQuadro.length; k++) {
+                for (int s = 0; s < 3; s++) linha(sb, "kanban_tarefas", rotuloQuadro(carregados.get(k)) + ",status=\"" + s + "\"", porQuadro[k][s]);
+            }
+            gauge(sb, "kanban_tarefas_bytes", "Memória estimada ocupada pelas tarefas", carregados, porQuadro, 3);
+            gauge(sb, "kanban_busca_termos", "Termos distintos no índice de busca", carregados, porQuadro, 4);
+            gauge(sb, "kanban_busca_pendentes", "Tarefas carregadas ainda fora do índice de busca", carregados, porQuadro, 5);
+            gauge(sb, "kanban_log_bytes", "Tamanho do log ativo", carregados, porQuadro, 6);
+            if (SEGUIDOR) {
+                cabecalho(sb, "kanban_replicacao_atraso_segundos", "gauge", "Tempo desde que a réplica alcançou o fim do log do primário");
+                for (Quadro q : carregados) {
+                    if (q.seguidor == null) continue;
+                    sb.append("kanban_replicacao_atraso_segundos{").append(rotuloQuadro(q)).append("} ")
+                            .append(String.format(Locale.ROOT, "%.3f", q.seguidor.atrasoMs() / 1e3)).append('\n');
+                }
+                cabecalho(sb, "kanban_replicacao_atraso_bytes", "gauge", "Bytes do log do primário ainda não aplicados");
+                for (Quadro q : carregados) {
+                    if (q.seguidor != null) linha(sb, "kanban_replicacao_atraso_bytes", rotuloQuadro(q), q.seguidor.atrasoBytes);
+                }
+                cabecalho(sb, "kanban_replicacao_registros_total", "counter", "Registros do log do primário aplicados");
+                for (Quadro q : carregados) {
+                    if (q.seguidor != null) linha(sb, "kanban_replicacao_registros_total", rotuloQuadro(q), q.seguidor.registros);
+                }
+                cabecalho(sb, "kanban_replicacao_recargas_total", "counter", "Cargas completas do quadro (abertura, reinício do primário ou réplica atrasada demais)");
+                for (Quadro q : carregados) {
+                    if (q.seguidor != null) linha(sb, "kanban_replicacao_recargas_total", rotuloQuadro(q), q.seguidor.recargas);
+                }
+            }
+            return sb.toString();
+        }
+
+        private static String rotuloQuadro(Quadro q) {
+            return "quadro=\"" + q.nome + "\""; // Nomes de quadro só têm [a-z0-9_-]: não precisam de escape
+        }
+
+        /**
+         * Escreve um gauge com uma série por quadro, a partir da coluna c dos valores lidos de cada um.
+         */
+        private static void gauge(StringBuilder sb, String nome, String ajuda, List<Quadro> carregados, long[][] valores, int c) {
+            cabecalho(sb, nome, "gauge", ajuda);
+            for (int k = 0; k < valores.length; k++) linha(sb, nome, rotuloQuadro(carregados.get(k)), valores[k][c]);
+        }
+
+        static void cabecalho(StringBuilder sb, String nome, String tipo, String ajuda) {
+            sb.append("# HELP ").append(nome).append(' ').append(ajuda).append('\n');
+            sb.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+        }
+
+        static void linha(StringBuilder sb, String nome, String rotulos, long valor) {
+            sb.append(nome);
+            if (!rotulos.isEmpty()) sb.append('{').append(rotulos).append('}');
+            sb.append(' ').append(valor).append('\n');
+        }
+    }
+
+    /**
+     * Filtro que mede cada requisição para o /metrics: duração (do início do filtro até o manipulador
+     * retornar, com a resposta já escrita) e código de status, por rota. Deve ser o primeiro filtro do
+     * contexto, para contar também as respostas 503 do {@link FiltroSobrecarga}.
+     */
+    static final class FiltroMetricas extends Filter {
+        @Override
+        public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+            long inicio = System.nanoTime();
+            try {
+                chain.doFilter(ex);
+            } finally {
+                Metricas.registrar(ex.getRequestMethod(), ex.getRequestURI().getPath(), ex.getResponseCode(),
+                        System.nanoTime() - inicio);
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Mede duração e status das requisições por rota";
+        }
+    }
+
+    /**
+     * Log de mutações append-only (write-ahead log).
+     * Cada criação, mudança de status ou exclusão vira um registro pequeno anexado ao final do
+     * arquivo. Uma thread gravadora junta todos os registros pendentes em um único write + fsync
+     * (group commit) e libera de uma vez as requisições que aguardavam aquele lote.
+     * No modo assíncrono a gravadora ainda segura o lote até passar o intervalo configurado desde o
+     * primeiro registro pendente ou até juntar maxMutacoes registros, o que vier antes; quem chama
+     * drenar() (rotação, fechamento) ou aguardar() força a gravação imediata.
+     * <p>Se um lote falha, o log não grava mais nada até reiniciar: gravar os lotes seguintes deixaria um
+     * buraco no meio do log (e, depois de um write parcial, registros colados no pedaço que ficou). Os
+     * lotes seguintes falham com o mesmo erro, e falha() permite recusar as mutações antes de aplicá-las.
+     */
+    static final class WriteAheadLog {
+        private final Path arquivo; // Caminho do log ativo
+        private FileChannel canal; // Canal de escrita do log ativo
+        private final ByteArrayOutputStream pendente = new ByteArrayOutputStream(); // Registros ainda não gravados
+        private long seqAnexado = 0; // Sequência do último registro anexado ao buffer
+        private long seqDuravel = 0; // Sequência do último registro gravado e sincronizado
+        private long falhaDesde = Long.MAX_VALUE; // Primeira sequência que não foi (nem será) gravada
+        private IOException falha; // Erro do lote que falhou; depois dele nada mais é gravado
+        private long tamanho; // Tamanho em bytes do log ativo (gravado + pendente)
+        private boolean gravando = false; // Indica se há um lote sendo gravado fora do monitor
+        private boolean fechado = false; // Indica se o log foi fechado
+        private final long intervaloNanos; // Atraso máximo de um registro no modo assíncrono (0 = gravar já)
+        private final int maxMutacoes; // Registros que disparam a gravação antes do intervalo
+        private long pendenteDesde; // Quando o primeiro registro do lote pendente foi anexado
+        private long seqRetirado = 0; // Sequência do último registro já retirado para gravação
+        private int urgentes = 0; // Threads esperando a gravação (drenar/aguardar): não há atraso
+
+        private WriteAheadLog(Path arquivo, long intervaloMs, int maxMutacoes) throws IOException {
+            this.arquivo = arquivo;
+            this.canal = abrirCanal(arquivo);
+            this.tamanho = canal.size();
+            this.intervaloNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervaloMs));
+            this.maxMutacoes = Math.max(1, maxMutacoes);
+        }
+
+        /**
+         * Abre (ou cria) o log e inicia a thread gravadora.
+         * @param arquivo O caminho do log.
+         * @param intervaloMs Quanto um registro pode esperar pelo lote (0 = grava assim que possível).
+         * @param maxMutacoes Quantidade de registros pendentes que dispara a gravação antes do intervalo.
+         * @return O log pronto para receber registros.
+         * @throws IOException Em caso de erro ao abrir o arquivo.
+         */
+        static WriteAheadLog abrir(Path arquivo, long intervaloMs, int maxMutacoes) throws IOException {
+            WriteAheadLog log = new WriteAheadLog(arquivo, intervaloMs, maxMutacoes);
+            Thread t = new Thread(log::executar, "kanban-wal");
+            t.setDaemon(true);
+            t.start();
+            return log;
+        }
+
+        private static FileChannel abrirCanal(Path arquivo) throws IOException {
+            return FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+
+        /**
+         * Anexa um registro ao buffer do próximo lote.
+         * @param registro O registro completo (com CRC e quebra de linha).
+         * @return A sequência do registro, usada em aguardar().
+         */
+        synchronized long anexar(String registro) {
+            byte[] b = registro.getBytes(StandardCharsets.UTF_8);
+            if (pendente.size() == 0) pendenteDesde = System.nanoTime();
+            pendente.write(b, 0, b.length);
+            tamanho += b.length;
+            // Acorda a thread gravadora (no modo assíncrono, só quando o lote já deve sair)
+            if (intervaloNanos == 0 || seqAnexado + 1 - seqRetirado >= maxMutacoes) notifyAll();
+            return ++seqAnexado;
+        }
+
+        /**
+         * Bloqueia até que o registro com a sequência informada esteja em disco.
+         * @param seq A sequência retornada por anexar().
+         * @throws IOException Se o lote que continha o registro falhou.
+         */
+        synchronized void aguardar(long seq) throws IOException {
+            boolean interrompido = false;
+            urgentes++;
+            notifyAll();
+            while (seqDuravel < seq) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrompido = true;
+                }
+            }
+            urgentes--;
+            if (interrompido) Thread.currentThread().interrupt();
+            if (seq >= falhaDesde) throw falha;
+        }
+
+        /**
+         * @return O erro do lote que falhou, ou null se o log está gravando normalmente.
+         */
+        synchronized IOException falha() {
+            return falha;
+        }
+
+        /**
+         * @return O tamanho atual do log ativo, em bytes.
+         */
+        synchronized long tamanho() {
+            return tamanho;
+        }
+
+        /**
+         * Espera o lote em andamento terminar, move o log ativo para o destino e começa um novo arquivo vazio.
+         * @param destino O novo nome do log atual (uma geração antiga).
+         * @throws IOException Em caso de erro ao mover ou reabrir o arquivo.
+         */
+        synchronized void rotacionar(Path destino) throws IOException {
+            drenar();
+            canal.close();
+            Files.move(arquivo, destino, StandardCopyOption.ATOMIC_MOVE);
+            canal = abrirCanal(arquivo);
+            tamanho = 0;
+        }
+
+        /**
+         * Grava os registros pendentes e fecha o log.
+         */
+        synchronized void fechar() throws IOException {
+            drenar();
+            fechado = true;
+            notifyAll();
+            canal.close();
+        }
+
+        /**
+         * Aguarda (com o monitor em posse) até não haver registros pendentes nem lote em gravação.
+         */
+        private void drenar() {
+            boolean interrompido = false;
+            urgentes++;
+            notifyAll();
+            while (pendente.size() > 0 || gravando) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrompido = true;
+                }
+            }
+            urgentes--;
+            if (interrompido) Thread.currentThread().interrupt();
+        }
+
+        /**
+         * Laço da thread gravadora: pega tudo que foi anexado desde o último lote,
+         * grava de uma vez, faz um único fsync e notifica quem aguardava.
+         */
+        private void executar() {
+            while (true) {
+                byte[] lote;
+                long ate;
+                synchronized (this) {
+                    try {
+                        while (true) {
+                            if (fechado) return;
+                            if (pendente.size() == 0) {
+                                wait();
+                                continue;
+                            }
+                            if (urgentes > 0 || seqAnexado - seqRetirado >= maxMutacoes) break;
+                            long espera = pendenteDesde + intervaloNanos - System.nanoTime();
+                            if (espera <= 0) break;
+                            TimeUnit.NANOSECONDS.timedWait(this, espera); // Junta mais registros no lote
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    lote = pendente.toByteArray();
+                    pendente.reset();
+                    ate = seqRetirado = seqAnexado;
+                    gravando = falha == null; // Depois de uma falha, os lotes são descartados sem gravar
+                }
+                IOException erro = null;
+                if (gravando) {
+                    long inicio = System.nanoTime();
+                    try {
+                        ByteBuffer bb = ByteBuffer.wrap(lote);
+                        while (bb.hasRemaining()) canal.write(bb);
+                        canal.force(false); // Um único fsync para todo o lote
+                        Metricas.GRAVACAO_LOG.registrar(System.nanoTime() - inicio);
+                    } catch (IOException e) {
+                        erro = e;
+                        System.out.println("Falha ao gravar log: " + e.getMessage() + "; o quadro passa a recusar mutações");
+                    }
+                }
+                synchronized (this) {
+                    if (erro != null) {
+                        falha = erro;
+                        falhaDesde = seqDuravel + 1;
+                    }
+                    seqDuravel = ate;
+                    gravando = false;
+                    notifyAll(); // Libera as requisições que aguardavam este lote
+                }
+            }
+        }
+    }
+
+    /**
+     * Réplica somente leitura de um quadro (modo seguidor, kanban.primario). O seguidor roda no mesmo
+     * diretório do primário e acompanha os logs que ele grava: uma thread lê o log ativo a cada
+     * kanban.seguidorIntervaloMs, a partir da última posição lida, e aplica os registros ao armazenamento
+     * local como a recuperação faz na inicialização, mas de forma contínua e sem nunca gravar nada.
+     * Só registros completos são aplicados (um lote, somente com todos os seus registros); registros com
+     * CRC errado são ignorados.
+     * <p>Quando o primário rotaciona o log (compactação), o arquivo antigo, que continua aberto, é lido até
+     * o fim e as gerações seguintes são lidas em ordem antes do novo log ativo. Se o arquivo que estava
+     * sendo lido já foi apagado (a compactação terminou antes) ou trocado (o primário reiniciou), não há
+     * como saber o que ficou para trás: o quadro é recarregado do snapshot e dos logs, sob a trava de
+     * escrita. A recarga abre os logs antes de ler o snapshot, então nenhum registro posterior ao snapshot
+     * lido pode ser apagado no meio; reaplicar os que o snapshot já contém não altera o resultado (ver
+     * {@link Quadro#reproduzirLog}).
+     */
+    static final class Seguidor {
+        static final int BLOCO = 256 << 10; // Bytes lidos (e aplicados sob a trava de escrita) por vez
+
+        /**
+         * Um arquivo de log aberto para leitura e a sua identidade no sistema de arquivos.
+         */
+        private record Arquivo(FileChannel canal, Object chave) {}
+
+        private final Quadro q;
+        private FileChannel canal; // Log acompanhado (null = não havia log ativo na última carga)
+        private Object chave; // Identidade (inode) do arquivo de canal, para detectar rotação e troca
+        private long posicao; // Bytes de canal já lidos
+        private byte[] resto = new byte[0]; // Bytes lidos que ainda não formam um registro (ou lote) completo
+        private int restoLen;
+        private boolean recarregar; // Uma rodada falhou no meio: o estado precisa ser recarregado
+        private volatile boolean parado;
+
+        // Estado da replicação, escrito somente pela thread do seguidor (/api/replication e /metrics)
+        volatile long emDiaEm = System.currentTimeMillis(); // Última vez em que o fim do log ativo foi alcançado
+        volatile long atrasoBytes; // Bytes do log ainda não aplicados na última rodada
+        volatile long registros, recargas;
+
+        Seguidor(Quadro q) {
+            this.q = q;
+        }
+
+        /**
+         * @return O atraso da réplica: o tempo desde a última vez em que o fim do log ativo foi alcançado.
+         */
+        long atrasoMs() {
+            return Math.max(0, System.currentTimeMillis() - emDiaEm);
+        }
+
+        /**
+         * Inicia a thread que acompanha o log do primário.
+         */
+        void iniciar() {
+            Thread t = new Thread(() -> {
+                while (!parado) {
+                    try {
+                        if (recarregar) recarregar();
+                        else passo();
+                    } catch (IOException | RuntimeException e) {
+                        recarregar = true;
+                        System.out.println("Falha ao acompanhar o log do quadro " + q.nome + ": " + e);
+                    }
+                    try {
+                        Thread.sleep(SEGUIDOR_INTERVALO_MS);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                usar(null);
+            }, "kanban-seguidor");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * Para a thread (o quadro foi descarregado).
+         */
+        void parar() {
+            parado = true;
+        }
+
+        /**
+         * Carrega o quadro do zero, como carregar() (snapshot, gerações de log e log ativo), mas sem gravar
+         * nem apagar nada, e passa a acompanhar o log ativo. As leituras esperam a recarga terminar.
+         * @throws IOException Em caso de erro de leitura (a próxima rodada tenta de novo).
+         */
+        void recarregar() throws IOException {
+            long t0 = System.nanoTime();
+            // O log ativo é aberto primeiro: toda geração rotacionada antes dele já aparece na listagem
+            Arquivo ativo = abrir(q.log);
+            List<Arquivo> logs = new ArrayList<>();
+            for (long g : q.geracoesLog()) {
+                Arquivo a = abrir(q.logGeracao(g));
+                if (a == null) continue; // Apagada por uma compactação: o snapshot lido a seguir a contém
+                if (ativo != null && a.chave().equals(ativo.chave())) { // O ativo já foi rotacionado
+                    a.canal().close();
+                    break;
+                }
+                logs.add(a);
+            }
+            Path p = q.snapshotParaLer();
+            long stamp = q.tarefas.trava.writeLock();
+            try {
+                recarregar = true;
+                restoLen = 0; // O registro incompleto do arquivo anterior é lido de novo desde o início
+                usar(null);
+                q.tarefas.limpar();
+                if (Files.exists(p)) q.lerSnapshot(p);
+                for (Arquivo a : logs) {
+                    usar(a);
+                    consumir(false);
+                }
+                usar(ativo);
+                if (canal != null) consumir(false);
+                if (q.tarefas.fragmentado()) q.tarefas.compactar(q.tarefas.congelar());
+                q.feed.iniciar(q.tarefas.versao()); // Os assinantes recebem reset: os eventos anteriores não valem mais
+                recarregar = false;
+            } finally {
+                q.tarefas.trava.unlockWrite(stamp);
+                for (Arquivo a : logs) {
+                    if (a.canal() != canal) a.canal().close();
+                }
+                if (ativo != null && ativo.canal() != canal) ativo.canal().close();
+            }
+            recargas++;
+            emDiaEm = System.currentTimeMillis();
+            atrasoBytes = 0;
+            q.indexarBusca(); // As tarefas carregadas são indexadas em segundo plano, como na abertura
+            Metricas.CARGA_QUADRO.registrar(System.nanoTime() - t0);
+            System.out.printf("Quadro %s sincronizado com o primário: %d tarefas, %d logs em %d ms%n", q.nome,
+                    q.tarefas.tamanho(), logs.size() + (ativo != null ? 1 : 0), (System.nanoTime() - t0) / 1_000_000);
+        }
+
+        /**
+         * Uma rodada: aplica o que o primário anexou ao log acompanhado e trata a rotação e a troca do log.
+         * @throws IOException Em caso de erro de leitura.
+         */
+        void passo() throws IOException {
+            if (canal == null) { // O primário não estava rodando na última carga
+                if (chave(q.log) != null) recarregar(); // Ao abrir, o primário consolidou os logs em um snapshot
+                else emDiaEm = System.currentTimeMillis();
+                return;
+            }
+            consumir(true);
+            long tamanho = tamanho(q.log);
+            Object atual = chave(q.log);
+            if (atual == null) return; // Entre a rotação e a criação do novo log
+            if (atual.equals(chave)) {
+                // Mesmo inode com conteúdo diferente: o log foi apagado e recriado (o primário reiniciou)
+                if (tamanho < posicao || canal.size() < tamanho) {
+                    recarregar();
+                    return;
+                }
+                atrasoBytes = tamanho - posicao;
+                if (atrasoBytes == 0) emDiaEm = System.currentTimeMillis();
+                indexarPendentes();
+                return;
+            }
+            // Rotacionado: o arquivo antigo foi completado antes de mudar de nome, então é lido até o fim
+            consumir(true);
+            long[] geracoes = q.geracoesLog();
+            int k = geracoes.length - 1;
+            while (k >= 0 && !chave.equals(chave(q.logGeracao(geracoes[k])))) k--;
+            if (k < 0) { // Já apagado pela compactação: as gerações seguintes podem ter sido apagadas também
+                recarregar();
+                return;
+            }
+            // Gerações posteriores à do arquivo lido, em ordem, até o log ativo (ou até ele, se já rotacionado)
+            Arquivo ativo = abrir(q.log);
+            for (long g : q.geracoesLog()) {
+                if (g <= geracoes[k]) continue;
+                Arquivo a = abrir(q.logGeracao(g));
+                if (a == null) { // Apagada antes de ser lida
+                    if (ativo != null) ativo.canal().close();
+                    recarregar();
+                    return;
+                }
+                if (ativo != null && a.chave().equals(ativo.chave())) {
+                    a.canal().close();
+                    break;
+                }
+                usar(a);
+                consumir(true);
+            }
+            if (ativo != null) {
+                usar(ativo);
+                consumir(true);
+            }
+            atrasoBytes = Math.max(0, tamanho(q.log) - (ativo != null ? posicao : 0));
+        }
+
+        /**
+         * Indexa para a busca, sob a trava de escrita, um lote das tarefas replicadas ainda fora do índice.
+         */
+        private void indexarPendentes() {
+            if (q.tarefas.pendentesBusca() == 0) return;
+            long stamp = q.tarefas.trava.writeLock();
+            try {
+                q.tarefas.indexarPendentes(LOTE_BUSCA);
+            } finally {
+                q.tarefas.trava.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Lê o arquivo acompanhado até o fim, em blocos de BLOCO bytes, aplicando os registros completos.
+         * @param travar true para aplicar cada bloco sob a trava de escrita (false: quem chama já a tem).
+         */
+        private void consumir(boolean travar) throws IOException {
+            while (true) {
+                if (resto.length - restoLen < BLOCO) resto = Arrays.copyOf(resto, Math.max(resto.length * 2, restoLen + BLOCO));
+                int n = canal.read(ByteBuffer.wrap(resto, restoLen, resto.length - restoLen), posicao);
+                if (n <= 0) return;
+                posicao += n;
+                restoLen += n;
+                if (!travar) {
+                    aplicar(false);
+                    continue;
+                }
+                long stamp = q.tarefas.trava.writeLock();
+                try {
+                    aplicar(true);
+                    if (q.tarefas.pendentesBusca() > 0) q.tarefas.indexarPendentes(LOTE_BUSCA);
+                    if (q.tarefas.fragmentado()) q.tarefas.compactar(q.tarefas.congelar());
+                } finally {
+                    q.tarefas.trava.unlockWrite(stamp);
+                }
+            }
+        }
+
+        /**
+         * Aplica os registros completos do início de resto e descarta os bytes usados. Um lote só é aplicado
+         * quando todos os seus registros chegaram; até lá, fica em resto. Deve rodar sob a trava de escrita.
+         * @param publicar true para publicar cada mudança no feed (false na recarga, que reinicia o feed).
+         */
+        private void aplicar(boolean publicar) {
+            int ini = 0, n = 0;
+            while (true) {
+                int fim = fimRegistro(ini);
+                if (fim < 0) break;
+                String[] a = conferir(ini, fim);
+                int prox = fim + 1;
+                if (a != null && "L".equals(a[0])) {
+                    int qtd = a.length < 2 ? 0 : parseIntSafe(a[1], 0);
+                    List<String[]> lote = new ArrayList<>(Math.min(qtd, 1 << 16));
+                    boolean valido = true;
+                    for (int k = 0; k < qtd && prox >= 0; k++) {
+                        int f = fimRegistro(prox);
+                        String[] r = f < 0 ? null : conferir(prox, f);
+                        if (r == null) valido = false;
+                        else lote.add(r);
+                        prox = f < 0 ? -1 : f + 1;
+                    }
+                    if (prox < 0) break; // Lote incompleto: espera a próxima leitura
+                    if (!valido) System.out.println("Lote inválido no log do quadro " + q.nome + ", ignorado");
+                    else {
+                        for (String[] r : lote) aplicarRegistro(r, publicar);
+                        n += lote.size();
+                    }
+                } else if (a != null) {
+                    aplicarRegistro(a, publicar);
+                    n++;
+                }
+                ini = prox;
+            }
+            System.arraycopy(resto, ini, resto, 0, restoLen - ini);
+            restoLen -= ini;
+            registros += n;
+        }
+
+        private void aplicarRegistro(String[] a, boolean publicar) {
+            if (publicar) q.aplicarReplicado(a);
+            else q.aplicarRegistro(a);
+        }
+
+        /**
+         * @return A posição do '\n' que termina o registro iniciado em ini (fora de aspas, como em
+         *         lerRegistro()), ou -1 se o registro ainda não chegou inteiro.
+         */
+        private int fimRegistro(int ini) {
+            boolean inQ = false;
+            for (int k = ini; k < restoLen; k++) {
+                if (resto[k] == '"') inQ = !inQ;
+                else if (!inQ && resto[k] == '\n') return k;
+            }
+            return -1;
+        }
+
+        /**
+         * @return Os campos do registro em resto[ini, fim), ou null se ele estiver em branco ou com CRC errado.
+         */
+        private String[] conferir(int ini, int fim) {
+            String reg = new String(resto, ini, fim - ini, StandardCharsets.UTF_8);
+            if (reg.endsWith("\r")) reg = reg.substring(0, reg.length() - 1);
+            if (reg.isBlank()) return null;
+            int c = reg.lastIndexOf(';'); // O último campo é o CRC32 do restante do registro
+            if (c <= 0 || !crc(reg.substring(0, c)).equals(reg.substring(c + 1))) {
+                System.out.println("Registro inválido no log do quadro " + q.nome + ", ignorado");
+                return null;
+            }
+            return splitCsv(reg.substring(0, c));
+        }
+
+        /**
+         * Passa a acompanhar o arquivo informado desde o início, fechando o anterior.
+         * @param a O arquivo aberto, ou null para nenhum.
+         */
+        private void usar(Arquivo a) {
+            if (canal != null) {
+                try {
+                    canal.close();
+                } catch (IOException e) {
+                    // Somente leitura: nada a perder
+                }
+            }
+            if (restoLen > 0) System.out.println("Log do quadro " + q.nome + " terminou no meio de um registro, descartado");
+            canal = a == null ? null : a.canal();
+            chave = a == null ? null : a.chave();
+            posicao = 0;
+            restoLen = 0;
+        }
+
+        /**
+         * Abre um arquivo para leitura junto com a sua identidade, tentando de novo se ele for trocado entre
+         * a consulta da identidade e a abertura.
+         * @return O arquivo aberto, ou null se ele não existe.
+         */
+        private static Arquivo abrir(Path p) throws IOException {
+            while (true) {
+                Object antes = chave(p);
+                if (antes == null) return null;
+                FileChannel c;
+                try {
+                    c = FileChannel.open(p, StandardOpenOption.READ);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (antes.equals(chave(p))) return new Arquivo(c, antes);
+                c.close();
+            }
+        }
+
+        /**
+         * @return A identidade do arquivo (o inode, onde houver), ou null se ele não existe.
+         */
+        private static Object chave(Path p) throws IOException {
+            try {
+                BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                return a.fileKey() != null ? a.fileKey() : a.creationTime();
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+
+        private static long tamanho(Path p) throws IOException {
+            try {
+                return Files.size(p);
+            } catch (NoSuchFileException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * @return O estado da replicação dos quadros carregados em JSON (GET /api/replication).
+         */
+        static String estadoJSON() {
+            List<Quadro> carregados = quadros.carregados();
+            carregados.sort(Comparator.comparing(q -> q.nome));
+            StringBuilder sb = new StringBuilder("{\"primario\":\"").append(jsonEsc(PRIMARIO)).append("\",\"quadros\":[");
+            for (Quadro q : carregados) {
+                Seguidor s = q.seguidor;
+                if (s == null) continue;
+                if (sb.charAt(sb.length() - 1) != '[') sb.append(',');
+                sb.append("{\"quadro\":\"").append(q.nome).append("\",\"atrasoMs\":").append(s.atrasoMs())
+                        .append(",\"atrasoBytes\":").append(s.atrasoBytes).append(",\"registros\":").append(s.registros)
+                        .append(",\"recargas\":").append(s.recargas).append(",\"versao\":").append(q.tarefas.ler(q.tarefas::versao)).append('}');
+            }
+            return sb.append("]}").toString();
+        }
+    }
+
+    /**
+     * Índice de chave primária: mapa ID → índice nos arrays, com endereçamento aberto.
+     * As chaves são os IDs já codificados em long pelo {@link TaskStore} (ver {@link TaskStore#codigo}).
+     * Usa sondagem linear em arrays paralelos (sem objetos por entrada) e remoção por
+     * deslocamento para trás, sem lápides. Consultas não alocam memória.
+     */
+    static final class IdIndex {
+        private static final long VAZIO = Long.MIN_VALUE; // Marca posição livre (nunca é um código de ID)
+        private long[] chaves; // Códigos dos IDs armazenados
+        private int[] valores; // Índice da tarefa correspondente a cada ID
+        private int tamanho = 0; // Quantidade de IDs no índice
+        private int mascara; // capacidade - 1 (capacidade é sempre potência de 2)
+
+        IdIndex(int capacidadeInicial) {
+            int cap = Integer.highestOneBit(Math.max(16, capacidadeInicial * 2 - 1));
+            chaves = new long[cap];
+            Arrays.fill(chaves, VAZIO);
+            valores = new int[cap];
+            mascara = cap - 1;
+        }
+
+        /**
+         * Espalha o código do ID para reduzir colisões em tabelas potência de 2.
+         */
+        private static int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        /**
+         * @return O índice da tarefa com o ID informado, ou -1 se não existir.
+         */
+        int get(long id) {
+            for (int p = hash(id) & mascara; ; p = (p + 1) & mascara) {
+                long k = chaves[p];
+                if (k == VAZIO) return -1;
+                if (k == id) return valores[p];
+            }
+        }
+
+        /**
+         * Associa o ID ao índice informado, substituindo uma associação existente.
+         */
+        void put(long id, int valor) {
+            if ((tamanho + 1) * 2 > chaves.length) redimensionar(); // Mantém o fator de carga <= 0,5
+            int p = hash(id) & mascara;
+            while (chaves[p] != VAZIO) {
+                if (chaves[p] == id) {
+                    valores[p] = valor;
+                    return;
+                }
+                p = (p + 1) & mascara;
+            }
+            chaves[p] = id;
+            valores[p] = valor;
+            tamanho++;
+        }
+
+        /**
+         * Remove o ID do índice, deslocando para trás as entradas seguintes do mesmo agrupamento.
+         */
+        void remove(long id) {
+            int p = hash(id) & mascara;
+            while (chaves[p] != VAZIO && chaves[p] != id) p = (p + 1) & mascara;
+            if (chaves[p] == VAZIO) return;
+            tamanho--;
+            chaves[p] = VAZIO;
+            // Desloca as entradas seguintes para preencher o buraco sem quebrar as sequências de sondagem
+            for (int livre = p, q = (p + 1) & mascara; chaves[q] != VAZIO; q = (q + 1) & mascara) {
+                int ideal = hash(chaves[q]) & mascara;
+                // Só move q para "livre" se a posição ideal de q não estiver no intervalo (livre, q]
+                if (((q - ideal) & mascara) >= ((q - livre) & mascara)) {
+                    chaves[livre] = chaves[q];
+                    valores[livre] = valores[q];
+                    chaves[q] = VAZIO;
+                    livre = q;
+                }
+            }
+        }
+
+        /**
+         * Remove todos os IDs do índice.
+         */
+        void clear() {
+            Arrays.fill(chaves, VAZIO);
+            tamanho = 0;
+        }
+
+        /**
+         * Dobra a capacidade da tabela e reinsere todas as entradas.
+         */
+        private void redimensionar() {
+            long[] ks = chaves;
+            int[] vs = valores;
+            chaves = new long[ks.length * 2];
+            Arrays.fill(chaves, VAZIO);
+            valores = new int[ks.length * 2];
+            mascara = chaves.length - 1;
+            tamanho = 0;
+            for (int i = 0; i < ks.length; i++) {
+                if (ks[i] != VAZIO) put(ks[i], vs[i]);
+            }
+        }
+    }
+
+    /**
+     * Erro de contrapressão: o armazenamento atingiu o limite configurado de tarefas ou de memória.
+     * O manipulador HTTP responde com 507 Insufficient Storage.
+     */
+    static final class CapacidadeExcedidaException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CapacidadeExcedidaException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * Arena dos textos das tarefas: títulos, descrições e IDs fora do formato padrão ficam gravados em
+     * blocos de bytes compartilhados, em vez de um objeto String (cabeçalho, array e referência) por campo.
+     * Cada texto é gravado como [cabeçalho varint][bytes] e referenciado por um long (bloco << 32 | início).
+     * O cabeçalho é tamanho << 1 | latin1: textos só com caracteres até U+00FF ficam em Latin-1 (um byte
+     * por caractere, como as Strings compactas da JVM) e os demais em UTF-8.
+     * <p>
+     * Textos de até maxCompartilhado bytes passam por uma tabela de deduplicação com contagem de usos:
+     * títulos e descrições repetidos ocupam o espaço de um só. A arena só cresce; o espaço dos textos
+     * liberados é contabilizado em {@link #lixo()} e recuperado quando o armazenamento é compactado.
+     * <p>
+     * Bytes já gravados nunca mudam: uma leitura otimista do {@link TaskStore} que cruza uma escrita no
+     * máximo lê um texto antigo ou falha com exceção, e em ambos os casos é descartada na validação.
+     */
+    static final class ArenaTextos {
+        static final int BLOCO = 1 << 20; // Tamanho dos blocos comuns
+        private static final int GRANDE = BLOCO / 8; // Textos maiores que isso ganham um bloco exclusivo
+
+        private final int maxCompartilhado; // Maior texto deduplicado, em bytes (0 = sem deduplicação)
+        private byte[][] blocos; // Diretório de blocos
+        private int nBlocos; // Blocos alocados
+        private int atual; // Bloco comum em preenchimento (-1 = nenhum)
+        private int pos; // Próximo byte livre do bloco atual
+        private long usados; // Bytes gravados, incluindo os já liberados
+        private long lixo; // Bytes de textos liberados
+        // Tabela de deduplicação (endereçamento aberto): referência + 1 (0 = livre), hash e contagem de usos
+        private long[] refs;
+        private int[] hashes;
+        private int[] usos;
+        private int compartilhados; // Entradas ocupadas na tabela
+
+        ArenaTextos(int maxCompartilhado) {
+            this.maxCompartilhado = maxCompartilhado;
+            limpar();
+        }
+
+        /**
+         * Descarta todos os textos e a tabela de deduplicação.
+         */
+        void limpar() {
+            blocos = new byte[4][];
+            nBlocos = 0;
+            atual = -1;
+            pos = 0;
+            usados = lixo = 0;
+            refs = new long[16];
+            hashes = new int[16];
+            usos = new int[16];
+            compartilhados = 0;
+        }
+
+        /**
+         * @return Bytes gravados na arena, incluindo os de textos já liberados.
+         */
+        long usados() { return usados; }
+
+        /**
+         * @return Bytes de textos liberados, recuperáveis recriando a arena.
+         */
+        long lixo() { return lixo; }
+
+        /**
+         * @return true se o texto cabe em Latin-1 (todos os caracteres até U+00FF).
+         */
+        static boolean latin1(String s) {
+            for (int k = 0; k < s.length(); k++) {
+                if (s.charAt(k) > 0xFF) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return Quantos bytes o texto ocupa na arena (sem o cabeçalho).
+         */
+        static int tamanho(String s) {
+            int t = 0;
+            for (int k = 0; k < s.length(); k++) {
+                char c = s.charAt(k);
+                if (c > 0xFF) return s.getBytes(StandardCharsets.UTF_8).length; // Raro: conta de novo em UTF-8
+                t++;
+            }
+            return t;
+        }
+
+        /**
+         * @return Quantos bytes o texto da referência ocupa na arena (sem o cabeçalho).
+         */
+        int tamanho(long ref) {
+            return (int) (cabecalho(blocos[(int) (ref >>> 32)], (int) ref) >>> 33);
+        }
+
+        /**
+         * Grava um texto na arena, reaproveitando uma cópia idêntica se ele for deduplicado.
+         * @param s O texto.
+         * @param compartilhar true para deduplicar independentemente do tamanho (IDs, que precisam de
+         *                     referência única para servir de chave do índice).
+         * @return A referência do texto.
+         */
+        long guardar(String s, boolean compartilhar) {
+            boolean l1 = latin1(s);
+            byte[] b = s.getBytes(l1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            return guardar(b.length << 1 | (l1 ? 1 : 0), b, 0, compartilhar);
+        }
+
+        /**
+         * Copia para esta arena um texto de outro diretório de blocos, sem decodificá-lo (compactação).
+         * @return A referência do texto nesta arena.
+         */
+        long copiar(byte[][] origem, long ref, boolean compartilhar) {
+            byte[] bl = origem[(int) (ref >>> 32)];
+            long c = cabecalho(bl, (int) ref);
+            return guardar((int) (c >>> 32), bl, (int) c, compartilhar);
+        }
+
+        /**
+         * Grava o texto de cabeçalho cab que começa em b[ini], deduplicando se preciso.
+         */
+        private long guardar(int cab, byte[] b, int ini, boolean compartilhar) {
+            if (!compartilhar && cab >>> 1 > maxCompartilhado) return gravar(cab, b, ini);
+            int h = hash(cab, b, ini, cab >>> 1);
+            int p = procurar(h, cab, b, ini);
+            if (refs[p] != 0) {
+                usos[p]++;
+                return refs[p] - 1;
+            }
+            long ref = gravar(cab, b, ini);
+            if ((compartilhados + 1) * 2 > refs.length) {
+                redimensionar(); // Mantém o fator de carga <= 0,5
+                p = procurar(h, cab, b, ini);
+            }
+            refs[p] = ref + 1;
+            hashes[p] = h;
+            usos[p] = 1;
+            compartilhados++;
+            return ref;
+        }
+
+        /**
+         * Procura um texto deduplicado sem gravá-lo (consulta de IDs).
+         * @return A referência do texto, ou -1 se ele não estiver na tabela.
+         */
+        long buscar(String s) {
+            boolean l1 = latin1(s);
+            byte[] b = s.getBytes(l1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            int cab = b.length << 1 | (l1 ? 1 : 0);
+            return refs[procurar(hash(cab, b, 0, b.length), cab, b, 0)] - 1;
+        }
+
+        /**
+         * Libera um uso do texto. Um texto deduplicado só vira lixo quando seu último uso é liberado.
+         * @param compartilhado O mesmo valor de "compartilhar" usado ao guardar o texto.
+         */
+        void liberar(long ref, boolean compartilhado) {
+            byte[] bl = blocos[(int) (ref >>> 32)];
+            long c = cabecalho(bl, (int) ref);
+            int cab = (int) (c >>> 32), ini = (int) c, len = cab >>> 1;
+            if (compartilhado || len <= maxCompartilhado) {
+                int m = refs.length - 1;
+                int p = hash(cab, bl, ini, len) & m;
+                while (refs[p] != 0 && refs[p] != ref + 1) p = (p + 1) & m;
+                if (refs[p] != 0) {
+                    if (--usos[p] > 0) return;
+                    remover(p);
+                }
+            }
+            lixo += ini - (int) ref + len;
+        }
+
+        /**
+         * @return O diretório de blocos atual. Os bytes já gravados nunca mudam, então o diretório serve de
+         *         cópia congelada dos textos existentes (ver {@link #texto(byte[][], long)}).
+         */
+        byte[][] blocos() { return blocos; }
+
+        /**
+         * @return O texto da referência informada.
+         */
+        String texto(long ref) {
+            return texto(blocos, ref);
+        }
+
+        /**
+         * @return O texto da referência informada em um diretório de blocos obtido por blocos().
+         */
+        static String texto(byte[][] blocos, long ref) {
+            byte[] bl = blocos[(int) (ref >>> 32)];
+            long c = cabecalho(bl, (int) ref);
+            int cab = (int) (c >>> 32);
+            return new String(bl, (int) c, cab >>> 1, (cab & 1) != 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Escreve o texto como string JSON direto dos bytes da arena, sem criar a String.
+         */
+        void escrever(JsonWriter w, long ref) throws IOException {
+            byte[] bl = blocos[(int) (ref >>> 32)];
+            long c = cabecalho(bl, (int) ref);
+            int cab = (int) (c >>> 32);
+            w.str(bl, (int) c, cab >>> 1, (cab & 1) != 0);
+        }
+
+        /**
+         * Lê o cabeçalho varint do texto que começa em p.
+         * @return cabeçalho << 32 | posição do primeiro byte do texto.
+         */
+        private static long cabecalho(byte[] bl, int p) {
+            int cab = 0;
+            for (int d = 0; ; d += 7) {
+                if (d > 28) throw new IllegalStateException("referência de texto inválida");
+                byte x = bl[p++];
+                cab |= (x & 0x7F) << d;
+                if (x >= 0) return (long) cab << 32 | p;
+            }
+        }
+
+        /**
+         * Grava cabeçalho e bytes (a partir de b[ini]) no bloco atual, ou em um bloco exclusivo se o texto
+         * for grande.
+         * @return A referência do texto.
+         */
+        private long gravar(int cab, byte[] b, int ini) {
+            int len = cab >>> 1;
+            int t = len + (32 - Integer.numberOfLeadingZeros(cab | 1) + 6) / 7;
+            int bl, inicio;
+            if (t > GRANDE) {
+                bl = novoBloco(t);
+                inicio = 0;
+            } else {
+                if (atual < 0 || pos + t > BLOCO) {
+                    atual = novoBloco(BLOCO);
+                    pos = 0;
+                }
+                bl = atual;
+                inicio = pos;
+                pos += t;
+            }
+            byte[] d = blocos[bl];
+            int p = inicio;
+            for (int v = cab; ; v >>>= 7) {
+                if (v < 0x80) {
+                    d[p++] = (byte) v;
+                    break;
+                }
+                d[p++] = (byte) (v & 0x7F | 0x80);
+            }
+            System.arraycopy(b, ini, d, p, len);
+            usados += t;
+            return (long) bl << 32 | inicio;
+        }
+
+        private int novoBloco(int tamanho) {
+            if (nBlocos == blocos.length) blocos = Arrays.copyOf(blocos, nBlocos * 2); // Copia apenas os ponteiros
+            blocos[nBlocos] = new byte[tamanho];
+            return nBlocos++;
+        }
+
+        private static int hash(int cab, byte[] b, int ini, int len) {
+            int h = cab;
+            for (int k = ini; k < ini + len; k++) h = 31 * h + b[k];
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * @return A posição do texto na tabela de deduplicação, ou a posição livre onde ele entraria.
+         */
+        private int procurar(int h, int cab, byte[] b, int ini) {
+            int m = refs.length - 1;
+            for (int p = h & m; ; p = (p + 1) & m) {
+                if (refs[p] == 0) return p;
+                if (hashes[p] == h && igual(refs[p] - 1, cab, b, ini)) return p;
+            }
+        }
+
+        private boolean igual(long ref, int cab, byte[] b, int ini) {
+            byte[] bl = blocos[(int) (ref >>> 32)];
+            long c = cabecalho(bl, (int) ref);
+            int p = (int) c, len = cab >>> 1;
+            return (int) (c >>> 32) == cab && Arrays.equals(bl, p, p + len, b, ini, ini + len);
+        }
+
+        /**
+         * Remove a entrada p da tabela, deslocando para trás as seguintes do mesmo agrupamento (como no IdIndex).
+         */
+        private void remover(int p) {
+            int m = refs.length - 1;
+            compartilhados--;
+            refs[p] = 0;
+            for (int livre = p, q = (p + 1) & m; refs[q] != 0; q = (q + 1) & m) {
+                int ideal = hashes[q] & m;
+                if (((q - ideal) & m) >= ((q - livre) & m)) {
+                    refs[livre] = refs[q];
+                    hashes[livre] = hashes[q];
+                    usos[livre] = usos[q];
+                    refs[q] = 0;
+                    livre = q;
+                }
+            }
+        }
+
+        private void redimensionar() {
+            long[] rs = refs;
+            int[] hs = hashes, us = usos;
+            int cap = rs.length * 2, m = cap - 1;
+            long[] nr = new long[cap];
+            int[] nh = new int[cap], nu = new int[cap];
+            for (int k = 0; k < rs.length; k++) {
+                if (rs[k] == 0) continue;
+                int p = hs[k] & m;
+                while (nr[p] != 0) p = (p + 1) & m;
+                nr[p] = rs[k];
+                nh[p] = hs[k];
+                nu[p] = us[k];
+            }
+            hashes = nh;
+            usos = nu;
+            refs = nr;
+        }
+    }
+
+    /**
+     * Índice invertido de títulos e descrições, usado por GET /api/tasks/search.
+     * Cada tarefa indexada recebe um número de documento crescente, e cada termo aponta para a lista dos
+     * documentos que o contêm (em ordem crescente, porque só se acrescenta no fim) com a frequência do
+     * termo no título e na descrição. Excluir só marca o documento como morto (O(1)); quando os mortos
+     * passam dos vivos, as listas são filtradas e os documentos renumerados de uma vez, o que mantém o custo
+     * amortizado constante sem nunca reconstruir o índice a partir dos textos.
+     * <p>
+     * Termos são sequências de letras e dígitos sem acento e em minúsculas; palavras vazias ("de", "para",
+     * ...) não são indexadas. Na consulta, cada termo casa por prefixo, todos precisam aparecer e a ordem é a
+     * do BM25, com o título pesando mais que a descrição.
+     * <p>
+     * Não tem sincronização própria: é alterado sob a trava de escrita do {@link TaskStore} e consultado sob
+     * a trava de leitura (nunca em leitura otimista).
+     */
+    static final class IndiceBusca {
+        static final int MAX_TERMO = 32; // Termos maiores são truncados
+        static final int MAX_TERMOS_CONSULTA = 16; // Termos além disso na consulta são ignorados
+        static final double K1 = 1.2, B = 0.75; // Parâmetros do BM25
+        static final int PESO_TITULO = 2; // Uma ocorrência no título vale duas na descrição
+        static final float PESO_PREFIXO = 0.5f; // Termo que só casa por prefixo vale menos que o exato
+        static final Set<String> VAZIAS = Set.of("a", "o", "as", "os", "e", "de", "da", "do", "das", "dos", "em",
+                "no", "na", "nos", "nas", "um", "uma", "para", "por", "com", "que", "se", "ao", "aos");
+        private static final char[] DOBRA = dobra(); // Caracteres até U+017F sem acento e minúsculos (0 = separador)
+
+        /**
+         * Documentos de um termo, em ordem crescente, com a frequência no título (4 bits altos) e na
+         * descrição (4 bits baixos), cada uma limitada a 15.
+         */
+        static final class Postagens {
+            int[] docs = new int[2];
+            byte[] freqs = new byte[2];
+            int n;
+
+            void adicionar(int doc, int freq) {
+                if (n == docs.length) {
+                    docs = Arrays.copyOf(docs, n * 2);
+                    freqs = Arrays.copyOf(freqs, n * 2);
+                }
+                docs[n] = doc;
+                freqs[n++] = (byte) freq;
+            }
+
+            /**
+             * @return O índice do documento na lista, ou -1 se ele não contém o termo.
+             */
+            int procurar(int doc) {
+                int k = Arrays.binarySearch(docs, 0, n, doc);
+                return k < 0 ? -1 : k;
+            }
+        }
+
+        /**
+         * Resultado de uma consulta: as posições no {@link TaskStore}, em ordem de relevância, e quantas
+         * tarefas casaram no total (antes do limite).
+         */
+        record Resultado(int[] posicoes, int total) { }
+
+        private final TreeMap<String, Postagens> termos = new TreeMap<>(); // Ordenado para expandir prefixos
+        private final HashMap<String, Postagens> exatos = new HashMap<>(); // Os mesmos termos, para a indexação
+        private int[] posicoes = new int[1024]; // Documento → posição no TaskStore (-1 = morto)
+        private int[] tamanhos = new int[1024]; // Documento → quantidade de termos (título com peso)
+        private int docs; // Documentos numerados (vivos e mortos)
+        private int vivos; // Documentos vivos
+        private long somaTamanhos; // Soma dos tamanhos dos vivos (para o tamanho médio do BM25)
+
+        /**
+         * Indexa os textos de uma tarefa.
+         * @param pos A posição da tarefa no TaskStore.
+         * @return O número do documento.
+         */
+        int indexar(int pos, String titulo, String descr) {
+            Map<String, Integer> freq = new HashMap<>();
+            int tam = PESO_TITULO * contar(titulo, freq, 1 << 16) + contar(descr, freq, 1);
+            if (docs == posicoes.length) {
+                posicoes = Arrays.copyOf(posicoes, docs * 2);
+                tamanhos = Arrays.copyOf(tamanhos, docs * 2);
+            }
+            int doc = docs++;
+            posicoes[doc] = pos;
+            tamanhos[doc] = tam;
+            vivos++;
+            somaTamanhos += tam;
+            for (Map.Entry<String, Integer> e : freq.entrySet()) {
+                Postagens p = exatos.get(e.getKey()); // A maioria dos termos já existe: evita descer na árvore
+                if (p == null) {
+                    exatos.put(e.getKey(), p = new Postagens());
+                    termos.put(e.getKey(), p);
+                }
+                int f = e.getValue();
+                p.adicionar(doc, Math.min(f >>> 16, 15) << 4 | Math.min(f & 0xFFFF, 15));
+            }
+            return doc;
+        }
+
+        /**
+         * Soma as ocorrências dos termos de um texto (fora as palavras vazias) no mapa de frequências.
+         * @param unidade 1 << 16 para o título, 1 para a descrição.
+         * @return A quantidade de termos contados.
+         */
+        private static int contar(String texto, Map<String, Integer> freq, int unidade) {
+            int n = 0;
+            for (String t : termos(texto)) {
+                if (VAZIAS.contains(t)) continue;
+                freq.merge(t, unidade, Integer::sum);
+                n++;
+            }
+            return n;
+        }
+
+        /**
+         * Marca um documento como morto. As listas continuam com ele até a próxima {@link #purgar}.
+         */
+        void remover(int doc) {
+            if (posicoes[doc] < 0) return;
+            posicoes[doc] = -1;
+            vivos--;
+            somaTamanhos -= tamanhos[doc];
+        }
+
+        /**
+         * @return true se os documentos mortos já passam dos vivos e vale a pena purgar.
+         */
+        boolean fragmentado() {
+            int mortos = docs - vivos;
+            return mortos > vivos && mortos >= 1024;
+        }
+
+        /**
+         * Atualiza a posição de um documento no TaskStore (compactação).
+         */
+        void mover(int doc, int pos) {
+            if (doc >= 0) posicoes[doc] = pos;
+        }
+
+        /**
+         * Descarta todos os documentos e termos.
+         */
+        void limpar() {
+            termos.clear();
+            exatos.clear();
+            posicoes = new int[1024];
+            tamanhos = new int[1024];
+            docs = vivos = 0;
+            somaTamanhos = 0;
+        }
+
+        /**
+         * Tira os documentos mortos de todas as listas e renumera os vivos em ordem, para que os números
+         * continuem densos e as listas continuem ordenadas. Depois disso, o documento d (0 <= d < documentos())
+         * está em posicao(d).
+         */
+        void purgar() {
+            int[] novo = new int[docs];
+            int m = 0;
+            for (int d = 0; d < docs; d++) {
+                if (posicoes[d] < 0) {
+                    novo[d] = -1;
+                    continue;
+                }
+                novo[d] = m;
+                posicoes[m] = posicoes[d];
+                tamanhos[m++] = tamanhos[d];
+            }
+            docs = m;
+            for (Iterator<Map.Entry<String, Postagens>> it = termos.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Postagens> e = it.next();
+                Postagens p = e.getValue();
+                int k = 0;
+                for (int j = 0; j < p.n; j++) {
+                    int d = novo[p.docs[j]];
+                    if (d < 0) continue;
+                    p.docs[k] = d;
+                    p.freqs[k++] = p.freqs[j];
+                }
+                p.n = k;
+                if (k == 0) {
+                    it.remove();
+                    exatos.remove(e.getKey());
+                } else if (k < p.docs.length / 4) {
+                    p.docs = Arrays.copyOf(p.docs, k * 2);
+                    p.freqs = Arrays.copyOf(p.freqs, k * 2);
+                }
+            }
+        }
+
+        /**
+         * @return Quantidade de documentos numerados, vivos e mortos.
+         */
+        int documentos() { return docs; }
+
+        /**
+         * @return A posição no TaskStore do documento informado, ou -1 se ele estiver morto.
+         */
+        int posicao(int doc) { return posicoes[doc]; }
+
+        /**
+         * Busca as tarefas que contêm todos os termos da consulta (cada um como prefixo de algum termo
+         * indexado), ordenadas pela soma do BM25 de cada termo casado; termos que só casam por prefixo
+         * valem {@link #PESO_PREFIXO}. Empates saem da mais recente para a mais antiga.
+         * <p>
+         * Os termos da consulta são processados do mais raro para o mais comum: o primeiro define os
+         * candidatos, e os seguintes percorrem suas listas ou, se os candidatos restantes forem poucos,
+         * procuram cada candidato nas listas por busca binária.
+         * @param consulta O texto da consulta.
+         * @param filtro Filtro sobre a posição da tarefa (por exemplo, o status).
+         * @param limite Quantidade máxima de resultados.
+         */
+        Resultado buscar(String consulta, java.util.function.IntPredicate filtro, int limite) {
+            List<String> q = new ArrayList<>(new LinkedHashSet<>(termos(consulta)));
+            // Palavras vazias não estão no índice; só viram prefixos se a consulta não tiver mais nada
+            if (!VAZIAS.containsAll(q)) q.removeIf(VAZIAS::contains);
+            if (q.size() > MAX_TERMOS_CONSULTA) q = q.subList(0, MAX_TERMOS_CONSULTA);
+            if (q.isEmpty() || vivos == 0) return new Resultado(new int[0], 0);
+
+            // Expande cada termo da consulta nos termos indexados que começam com ele
+            List<Postagens[]> listas = new ArrayList<>(q.size());
+            List<float[]> pesos = new ArrayList<>(q.size());
+            long[] custos = new long[q.size()];
+            for (int t = 0; t < q.size(); t++) {
+                String termo = q.get(t);
+                Collection<Map.Entry<String, Postagens>> faixa =
+                        termos.subMap(termo, true, termo + Character.MAX_VALUE, false).entrySet();
+                if (faixa.isEmpty()) return new Resultado(new int[0], 0); // Algum termo não aparece em nada
+                Postagens[] ps = new Postagens[faixa.size()];
+                float[] ws = new float[ps.length];
+                int k = 0;
+                for (Map.Entry<String, Postagens> e : faixa) {
+                    ps[k] = e.getValue();
+                    ws[k] = (e.getKey().length() == termo.length() ? 1f : PESO_PREFIXO) * idf(ps[k].n);
+                    custos[t] += ps[k++].n;
+                }
+                listas.add(ps);
+                pesos.add(ws);
+            }
+            Integer[] ordem = new Integer[q.size()];
+            for (int t = 0; t < ordem.length; t++) ordem[t] = t;
+            Arrays.sort(ordem, Comparator.comparingLong(t -> custos[t]));
+
+            double media = (double) somaTamanhos / vivos;
+            float[] pontos = new float[docs];
+            byte[] casados = new byte[docs]; // Quantos termos da consulta o documento já casou
+            int[] cand = new int[0];
+            int nCand = 0;
+            for (int r = 0; r < ordem.length; r++) {
+                Postagens[] ps = listas.get(ordem[r]);
+                float[] ws = pesos.get(ordem[r]);
+                byte antes = (byte) r, depois = (byte) (r + 1);
+                if (r > 0 && (long) nCand * ps.length * 20 < custos[ordem[r]]) {
+                    // Poucos candidatos: procura cada um nas listas em vez de percorrê-las
+                    for (int c = 0; c < nCand; c++) {
+                        int d = cand[c];
+                        for (int e = 0; e < ps.length; e++) {
+                            int k = ps[e].procurar(d);
+                            if (k < 0) continue;
+                            casados[d] = depois;
+                            pontos[d] += ws[e] * bm25(ps[e].freqs[k], tamanhos[d], media);
+                        }
+                    }
+                } else {
+                    if (r == 0) cand = new int[(int) Math.min(custos[ordem[0]], docs)];
+                    for (int e = 0; e < ps.length; e++) {
+                        Postagens p = ps[e];
+                        for (int j = 0; j < p.n; j++) {
+                            int d = p.docs[j];
+                            byte c = casados[d];
+                            if (c == antes) {
+                                if (posicoes[d] < 0) continue; // Documento morto
+                                casados[d] = depois;
+                                if (r == 0) cand[nCand++] = d;
+                            } else if (c != depois) {
+                                continue; // Não casou algum termo anterior
+                            }
+                            pontos[d] += ws[e] * bm25(p.freqs[j], tamanhos[d], media);
+                        }
+                    }
+                }
+                // Mantém só os candidatos que casaram também este termo
+                int m = 0;
+                for (int c = 0; c < nCand; c++) {
+                    if (casados[cand[c]] == depois) cand[m++] = cand[c];
+                }
+                nCand = m;
+                if (nCand == 0) return new Resultado(new int[0], 0);
+            }
+
+            // Seleciona os melhores com um heap de mínimo limitado ao tamanho do resultado
+            Comparator<Integer> pior = (a, b) -> {
+                int c = Float.compare(pontos[a], pontos[b]);
+                return c != 0 ? c : Integer.compare(a, b); // Empate: o documento mais antigo perde
+            };
+            PriorityQueue<Integer> melhores = new PriorityQueue<>(Math.min(limite, nCand) + 1, pior);
+            int total = 0;
+            for (int c = 0; c < nCand; c++) {
+                int d = cand[c];
+                if (!filtro.test(posicoes[d])) continue;
+                total++;
+                if (melhores.size() < limite) melhores.add(d);
+                else if (pior.compare(d, melhores.peek()) > 0) {
+                    melhores.poll();
+                    melhores.add(d);
+                }
+            }
+            int[] out = new int[melhores.size()];
+            for (int k = out.length - 1; k >= 0; k--) out[k] = posicoes[melhores.poll()];
+            return new Resultado(out, total);
+        }
+
+        /**
+         * IDF do BM25 para um termo presente em df documentos (mortos ainda não purgados incluídos).
+         */
+        private float idf(int df) {
+            df = Math.min(df, vivos);
+            return (float) Math.log(1 + (vivos - df + 0.5) / (df + 0.5));
+        }
+
+        /**
+         * Parcela do BM25 de uma ocorrência, sem o IDF.
+         */
+        private static float bm25(byte freq, int tamanho, double media) {
+            int tf = PESO_TITULO * ((freq >>> 4) & 15) + (freq & 15);
+            return (float) (tf * (K1 + 1) / (tf + K1 * (1 - B + B * tamanho / media)));
+        }
+
+        /**
+         * Divide um texto em termos: sequências de letras e dígitos, sem acentos e em minúsculas.
+         * Qualquer outro caractere separa termos; acentos combinantes (forma NFD) são ignorados.
+         */
+        static List<String> termos(String texto) {
+            List<String> out = new ArrayList<>();
+            char[] t = new char[MAX_TERMO];
+            int k = 0;
+            for (int p = 0, len = texto.length(); p <= len; p++) {
+                char c = p < len ? texto.charAt(p) : ' ';
+                char d;
+                if (c < DOBRA.length) d = DOBRA[c];
+                else if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+                else d = Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : 0;
+                if (d != 0) {
+                    if (k < MAX_TERMO) t[k++] = d;
+                } else if (k > 0) {
+                    out.add(new String(t, 0, k));
+                    k = 0;
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Tabela de normalização do Latin-1 e do Latin Extended-A (onde estão os acentos do português):
+         * a primeira letra da decomposição NFD, em minúscula.
+         */
+        private static char[] dobra() {
+            char[] m = new char[0x180];
+            for (char c = 0; c < m.length; c++) {
+                if (!Character.isLetterOrDigit(c)) continue;
+                String d = java.text.Normalizer.normalize(String.valueOf(c), java.text.Normalizer.Form.NFD);
+                m[c] = Character.toLowerCase(d.charAt(0));
+            }
+            return m;
+        }
+
+        /**
+         * @return Quantidade de termos distintos no índice.
+         */
+        int termosDistintos() { return termos.size(); }
+    }
+
+    /**
+     * Estatísticas do quadro mantidas a cada mutação, para que GET /api/tasks/stats não percorra as tarefas.
+     * Por status guarda a quantidade, a soma dos instantes de entrada no status atual (o tempo no status de
+     * todas as tarefas sai de quantidade × agora − soma) e a soma das esperas entre a criação e a entrada
+     * no status atual; guarda também quantas tarefas foram criadas em cada hora. Cada mutação custa O(1)
+     * nas somas e O(log h) no mapa de horas (h = horas com alguma criação).
+     * <p>Os instantes entram nas somas relativos a BASE, para que caibam em um long mesmo com dezenas de
+     * milhões de tarefas. Só a entrada no status atual é registrada: o tempo que uma tarefa concluída
+     * passou em DOING não é guardado.
+     */
+    static final class Estatisticas {
+        static final long HORA = 3_600_000L;
+        static final long BASE = 1_577_836_800_000L; // 2020-01-01T00:00Z
+        static final String[] INTERVALOS = {"hora", "dia", "semana"};
+
+        private final long[] tarefas = new long[3];
+        private final long[] somaDesde = new long[3]; // Σ (entrada no status − BASE)
+        private final long[] somaEspera = new long[3]; // Σ (entrada no status − criação)
+        private final TreeMap<Long, int[]> porHora = new TreeMap<>(); // Hora da criação (ms / HORA) → tarefas
+
+        void adicionar(int st, long criado, long desde) {
+            tarefas[st]++;
+            somaDesde[st] += desde - BASE;
+            somaEspera[st] += desde - criado;
+            porHora.computeIfAbsent(Math.floorDiv(criado, HORA), h -> new int[1])[0]++;
+        }
+
+        void remover(int st, long criado, long desde) {
+            tarefas[st]--;
+            somaDesde[st] -= desde - BASE;
+            somaEspera[st] -= desde - criado;
+            Long h = Math.floorDiv(criado, HORA);
+            int[] c = porHora.get(h);
+            if (c != null && --c[0] == 0) porHora.remove(h);
+        }
+
+        /**
+         * Move uma tarefa entre status (a hora de criação não muda).
+         */
+        void mudarStatus(int de, long desdeAntes, int para, long desde, long criado) {
+            tarefas[de]--;
+            somaDesde[de] -= desdeAntes - BASE;
+            somaEspera[de] -= desdeAntes - criado;
+            tarefas[para]++;
+            somaDesde[para] += desde - BASE;
+            somaEspera[para] += desde - criado;
+        }
+
+        void limpar() {
+            Arrays.fill(tarefas, 0);
+            Arrays.fill(somaDesde, 0);
+            Arrays.fill(somaEspera, 0);
+            porHora.clear();
+        }
+
+        /**
+         * @return O índice em INTERVALOS, ou -1 se o nome não for conhecido.
+         */
+        static int intervalo(String nome) {
+            for (int k = 0; k < INTERVALOS.length; k++) {
+                if (INTERVALOS[k].equals(nome)) return k;
+            }
+            return -1;
+        }
+
+        /**
+         * @return O início (ms, UTC) do intervalo que contém a hora h; semanas começam na segunda-feira.
+         */
+        static long inicio(long h, int intervalo) {
+            return switch (intervalo) {
+                case 0 -> h * HORA;
+                case 1 -> Math.floorDiv(h, 24) * 24 * HORA;
+                default -> (Math.floorDiv(Math.floorDiv(h, 24) + 3, 7) * 7 - 3) * 24 * HORA; // 1970-01-01 foi uma quinta
+            };
+        }
+
+        /**
+         * Escreve as estatísticas em JSON. Não adquire travas: deve rodar sob a trava de leitura (e não em
+         * tarefas.ler(): o percurso do TreeMap por hora não sobrevive a uma escrita concorrente).
+         * @param agora O instante de referência para o tempo no status.
+         * @param intervalo O índice em INTERVALOS das criações agrupadas.
+         * @param criadoDesde Primeiro instante de criação listado nos intervalos.
+         */
+        String json(long agora, int intervalo, long criadoDesde) {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"total\":").append(tarefas[0] + tarefas[1] + tarefas[2]).append(",\"status\":[");
+            for (int s = 0; s < 3; s++) {
+                long n = tarefas[s];
+                long noStatus = Math.max(0, n * (agora - BASE) - somaDesde[s]);
+                sb.append(s > 0 ? "," : "").append("{\"status\":").append(s).append(",\"tarefas\":").append(n)
+                        .append(",\"tempoNoStatusMs\":").append(noStatus)
+                        .append(",\"mediaNoStatusMs\":").append(n == 0 ? 0 : noStatus / n)
+                        .append(",\"mediaAteStatusMs\":").append(n == 0 ? 0 : somaEspera[s] / n).append('}');
+            }
+            sb.append("],\"intervalo\":\"").append(INTERVALOS[intervalo]).append("\",\"criadas\":[");
+            long atual = Long.MIN_VALUE, qtd = 0;
+            boolean primeiro = true;
+            for (Map.Entry<Long, int[]> e : porHora.tailMap(Math.floorDiv(criadoDesde, HORA), true).entrySet()) {
+                long ini = inicio(e.getKey(), intervalo);
+                if (ini != atual && qtd > 0) {
+                    sb.append(primeiro ? "" : ",").append("{\"inicio\":").append(atual).append(",\"tarefas\":").append(qtd).append('}');
+                    primeiro = false;
+                    qtd = 0;
+                }
+                atual = ini;
+                qtd += e.getValue()[0];
+            }
+            if (qtd > 0) sb.append(primeiro ? "" : ",").append("{\"inicio\":").append(atual).append(",\"tarefas\":").append(qtd).append('}');
+            return sb.append("]}").toString();
+        }
+    }
+
+    /**
+     * Armazenamento das tarefas em memória.
+     * As colunas (ids, títulos, descrições, status, criação, entrada no status e encadeamento) ficam em arrays segmentados:
+     * cada segmento tem SEG posições e é alocado somente quando necessário, e crescer significa apenas
+     * copiar o diretório de segmentos (ponteiros), nunca os dados já armazenados.
+     * As colunas são todas primitivas: o ID é codificado em um long (ver {@link #codigo}) e títulos e
+     * descrições são referências para a {@link ArenaTextos}, sem nenhum objeto por tarefa além das
+     * entradas dos índices por status.
+     * Posições excluídas viram lápides e são reaproveitadas pela lista de posições livres;
+     * uma lista duplamente encadeada mantém as tarefas em ordem de criação.
+     * <p>
+     * Concorrência: toda mutação acontece sob a trava de escrita de {@link #trava} (as operações são O(1)
+     * e não fazem I/O, então a seção crítica é curta); leituras usam {@link #ler}, que tenta uma leitura
+     * otimista sem bloquear e recorre à trava de leitura quando uma escrita acontece no meio.
+     */
+    static final class TaskStore {
+        static final int SEG_BITS = 12; // Cada segmento guarda 4096 posições
+        static final int SEG = 1 << SEG_BITS;
+        static final int SEG_MASK = SEG - 1;
+        static final int BYTES_POR_TAREFA = 200; // Estimativa do custo fixo de uma tarefa (colunas, índices, objetos)
+        static final int PESO_TEXTO = 2; // Cada byte de texto ocupa a arena e, em média, outro byte no índice de busca
+
+        // Diretórios de segmentos das colunas
+        private long[][] ids = new long[4][]; // IDs das tarefas, codificados por codigo()
+        private long[][] titulos = new long[4][]; // Títulos das tarefas (referências na arena)
+        private long[][] descrs = new long[4][]; // Descrições das tarefas (referências na arena)
+        private byte[][] status = new byte[4][]; // Status das tarefas (0: TODO, 1: DOING, 2: DONE)
+        private long[][] criados = new long[4][]; // Timestamp de criação das tarefas
+        private long[][] desdes = new long[4][]; // Timestamp da entrada no status atual (a criação, se nunca mudou)
+        private long[][] ordens = new long[4][]; // Sequência de criação (única e crescente, preservada na compactação)
+        private int[][] anterior = new int[4][]; // Tarefa criada imediatamente antes (-1 = nenhuma)
+        private int[][] proximo = new int[4][]; // Tarefa criada depois; em posições livres, a próxima livre
+        private int[][] documentos = new int[4][]; // Documento da tarefa no índice de busca (-1 = pendente)
+        private int segmentos = 0; // Quantidade de segmentos alocados
+
+        private int n = 0; // Contador de tarefas ativas
+        private int alto = 0; // Posições já usadas ao menos uma vez (0..alto)
+        private int cabeca = -1, cauda = -1; // Tarefa mais antiga e mais recente
+        private int livre = -1; // Primeira posição da lista de posições livres
+        private long bytes = 0; // Memória estimada ocupada pelas tarefas
+        private long ultimaOrdem = 0; // Última sequência de criação atribuída
+        private long versao = 0; // Incrementada a cada mutação (invalida caches da listagem)
+        private final IdIndex indice = new IdIndex(16); // Índice ID → posição
+        private final ArenaTextos textos; // Títulos, descrições e IDs fora do padrão
+        private final IndiceBusca busca = new IndiceBusca(); // Índice invertido de títulos e descrições
+        private final Estatisticas estatisticas = new Estatisticas(); // Agregados de GET /api/tasks/stats
+        private int pendentes = 0; // Tarefas carregadas ainda fora do índice de busca
+        private String buscaId; // Última tarefa visitada por indexarPendentes() (null = início)
+        private long buscaOrdem;
+        // Índices secundários por status, ordenados por criação: chave (criadoEm, ordem) → posição
+        private final List<TreeMap<Chave, Integer>> porStatus = List.of(new TreeMap<>(), new TreeMap<>(), new TreeMap<>());
+
+        private final int maxTarefas; // Limite de tarefas (contrapressão)
+        private final long maxBytes; // Limite de memória estimada (contrapressão)
+        final StampedLock trava = new StampedLock(); // Trava de escrita exclusiva / leitura otimista
+
+        /**
+         * Executa uma leitura consistente do armazenamento. Tenta primeiro uma leitura otimista, que não
+         * bloqueia escritores; se alguma escrita aconteceu no meio (ou a leitura falhou por observar estado
+         * intermediário), repete sob a trava de leitura. A leitura não deve ter efeitos colaterais.
+         * @param leitura A leitura a executar.
+         * @return O resultado de uma execução que não foi atravessada por nenhuma escrita.
+         */
+        <T> T ler(Supplier<T> leitura) {
+            long stamp = trava.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    T r = leitura.get();
+                    if (trava.validate(stamp)) return r;
+                } catch (RuntimeException e) {
+                    // Estado intermediário observado pela leitura otimista; repete com a trava de leitura
+                }
+            }
+            stamp = trava.readLock();
+            try {
+                return leitura.get();
+            } finally {
+                trava.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * @param dedupTextos Maior texto deduplicado na arena, em bytes (0 = sem deduplicação).
+         */
+        TaskStore(int maxTarefas, long maxBytes, int dedupTextos) {
+            this.maxTarefas = maxTarefas;
+            this.maxBytes = maxBytes;
+            this.textos = new ArenaTextos(dedupTextos);
+        }
+
+        /**
+         * Converte o formato gerado por criar() (8 dígitos hexadecimais minúsculos) no valor de 32 bits.
+         * @return O valor (>= 0), ou -1 se o ID tiver outro formato.
+         */
+        static long hex(String id) {
+            if (id.length() != 8) return -1;
+            long v = 0;
+            for (int k = 0; k < 8; k++) {
+                char c = id.charAt(k);
+                int d = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+                if (d < 0) return -1;
+                v = v << 4 | d;
+            }
+            return v;
+        }
+
+        /**
+         * Codifica um ID para a coluna de IDs e o índice. IDs no formato padrão viram o próprio valor de
+         * 32 bits; os demais (de arquivos antigos ou editados à mão) são deduplicados na arena e
+         * representados pelo complemento da referência, sempre negativo.
+         * @param gravar true para registrar o ID na arena se preciso (inserção); false só consulta.
+         * @return O código, ou Long.MIN_VALUE se o ID não existir e gravar for false.
+         */
+        private long codigo(String id, boolean gravar) {
+            long v = hex(id);
+            if (v >= 0) return v;
+            long ref = gravar ? textos.guardar(id, true) : textos.buscar(id);
+            return ref < 0 ? Long.MIN_VALUE : ~ref;
+        }
+
+        /**
+         * Decodifica um ID a partir do seu código (inverso de codigo()).
+         */
+        private static String id(long c, byte[][] blocos) {
+            if (c < 0) return ArenaTextos.texto(blocos, ~c);
+            char[] d = new char[8];
+            for (int k = 7; k >= 0; k--, c >>>= 4) d[k] = HEX[(int) c & 0xF];
+            return new String(d);
+        }
+
+        // Acesso às colunas por posição
+        String id(int i) { return id(ids[i >>> SEG_BITS][i & SEG_MASK], textos.blocos()); }
+        String titulo(int i) { return textos.texto(titulos[i >>> SEG_BITS][i & SEG_MASK]); }
+        String descr(int i) { return textos.texto(descrs[i >>> SEG_BITS][i & SEG_MASK]); }
+        int status(int i) { return status[i >>> SEG_BITS][i & SEG_MASK]; }
+        long criado(int i) { return criados[i >>> SEG_BITS][i & SEG_MASK]; }
+        long desde(int i) { return desdes[i >>> SEG_BITS][i & SEG_MASK]; }
+        long ordem(int i) { return ordens[i >>> SEG_BITS][i & SEG_MASK]; }
+        private int anterior(int i) { return anterior[i >>> SEG_BITS][i & SEG_MASK]; }
+        private void anterior(int i, int v) { anterior[i >>> SEG_BITS][i & SEG_MASK] = v; }
+        private void proximo(int i, int v) { proximo[i >>> SEG_BITS][i & SEG_MASK] = v; }
+        private int documento(int i) { return documentos[i >>> SEG_BITS][i & SEG_MASK]; }
+        private void documento(int i, int d) { documentos[i >>> SEG_BITS][i & SEG_MASK] = d; }
+
+        /**
+         * @return A posição seguinte em ordem de criação, ou -1 no fim.
+         */
+        int proximo(int i) { return proximo[i >>> SEG_BITS][i & SEG_MASK]; }
+
+        /**
+         * Escreve o ID da tarefa como string JSON, sem criar a String.
+         */
+        void escreverId(JsonWriter w, int i) throws IOException {
+            long c = ids[i >>> SEG_BITS][i & SEG_MASK];
+            if (c < 0) textos.escrever(w, ~c);
+            else w.hex8(c);
+        }
+
+        /**
+         * Escreve o título da tarefa como string JSON direto da arena.
+         */
+        void escreverTitulo(JsonWriter w, int i) throws IOException {
+            textos.escrever(w, titulos[i >>> SEG_BITS][i & SEG_MASK]);
+        }
+
+        /**
+         * Escreve a descrição da tarefa como string JSON direto da arena.
+         */
+        void escreverDescr(JsonWriter w, int i) throws IOException {
+            textos.escrever(w, descrs[i >>> SEG_BITS][i & SEG_MASK]);
+        }
+
+        /**
+         * Chave dos índices por status: ordena pelo timestamp de criação e desempata pela sequência de criação.
+         * Também serve de cursor de paginação.
+         */
+        record Chave(long criado, long ordem) implements Comparable<Chave> {
+            @Override
+            public int compareTo(Chave o) {
+                int c = Long.compare(criado, o.criado);
+                return c != 0 ? c : Long.compare(ordem, o.ordem);
+            }
+
+            /**
+             * @return O cursor opaco "criadoEm.ordem" em base 36.
+             */
+            String cursor() {
+                return Long.toString(criado, 36) + "." + Long.toString(ordem, 36);
+            }
+
+            /**
+             * @return A chave codificada em um cursor, ou null se ele for inválido.
+             */
+            static Chave deCursor(String c) {
+                int p = c.indexOf('.');
+                if (p <= 0) return null;
+                try {
+                    return new Chave(Long.parseLong(c.substring(0, p), 36), Long.parseLong(c.substring(p + 1), 36));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * @return A chave de ordenação da tarefa na posição informada.
+         */
+        Chave chave(int i) { return new Chave(criado(i), ordem(i)); }
+
+        /**
+         * Consulta as tarefas em ordem de criação pelos índices por status, sem varrer o armazenamento:
+         * o custo é O(log n) para posicionar mais O(1) por tarefa devolvida.
+         * Sem filtro de status, intercala os três índices. Deve rodar sob a trava de leitura.
+         * @param st O status a filtrar, ou -1 para todos.
+         * @param depois Cursor exclusivo (chave da última tarefa já entregue), ou null para começar da ponta.
+         * @param desde Menor timestamp de criação aceito (Long.MIN_VALUE = sem filtro).
+         * @param desc true para começar pelas mais recentes.
+         * @param limite Quantidade máxima de tarefas.
+         * @return As posições encontradas, na ordem pedida.
+         */
+        int[] consultar(int st, Chave depois, long desde, boolean desc, int limite) {
+            Chave minimo = new Chave(desde, Long.MIN_VALUE);
+            List<Iterator<Map.Entry<Chave, Integer>>> its = new ArrayList<>(3);
+            for (int s = 0; s < 3; s++) {
+                if (st >= 0 && s != st) continue;
+                NavigableMap<Chave, Integer> m = porStatus.get(s);
+                if (desc) {
+                    if (depois != null) {
+                        if (depois.compareTo(minimo) <= 0) continue; // Nada entre o filtro e o cursor
+                        m = m.headMap(depois, false);
+                    }
+                    its.add(m.tailMap(minimo, true).descendingMap().entrySet().iterator());
+                } else {
+                    m = depois != null && depois.compareTo(minimo) >= 0 ? m.tailMap(depois, false) : m.tailMap(minimo, true);
+                    its.add(m.entrySet().iterator());
+                }
+            }
+            // Intercala os iteradores pegando sempre a menor (ou maior, se desc) chave da frente
+            List<Map.Entry<Chave, Integer>> frentes = new ArrayList<>(its.size());
+            for (Iterator<Map.Entry<Chave, Integer>> it : its) frentes.add(it.hasNext() ? it.next() : null);
+            int[] out = new int[Math.min(limite, n)];
+            int k = 0;
+            while (k < out.length) {
+                int melhor = -1;
+                for (int f = 0; f < frentes.size(); f++) {
+                    Map.Entry<Chave, Integer> e = frentes.get(f);
+                    if (e == null) continue;
+                    if (melhor < 0) melhor = f;
+                    else {
+                        int c = e.getKey().compareTo(frentes.get(melhor).getKey());
+                        if (desc ? c > 0 : c < 0) melhor = f;
+                    }
+                }
+                if (melhor < 0) break;
+                out[k++] = frentes.get(melhor).getValue();
+                Iterator<Map.Entry<Chave, Integer>> it = its.get(melhor);
+                frentes.set(melhor, it.hasNext() ? it.next() : null);
+            }
+            return k == out.length ? out : Arrays.copyOf(out, k);
+        }
+
+        /**
+         * Busca textual nos títulos e descrições (ver {@link IndiceBusca#buscar}). Deve rodar sob a trava
+         * de leitura.
+         * @param consulta O texto da consulta.
+         * @param st O status a filtrar, ou -1 para todos.
+         * @param limite Quantidade máxima de resultados.
+         * @return As posições em ordem de relevância e o total de tarefas que casaram, ou null se ainda há
+         *         tarefas carregadas fora do índice (o resultado seria incompleto).
+         */
+        IndiceBusca.Resultado pesquisar(String consulta, int st, int limite) {
+            if (pendentes > 0) return null;
+            return busca.buscar(consulta, i -> st < 0 || status(i) == st, limite);
+        }
+
+        /**
+         * Indexa para a busca até "lote" tarefas pendentes (carregadas por {@link #inserir}), em ordem de
+         * criação, retomando de onde a chamada anterior parou. Deve rodar sob a trava de escrita; quem
+         * chama libera a trava entre os lotes para não segurar as demais requisições.
+         * @return true se ainda restam tarefas pendentes.
+         */
+        boolean indexarPendentes(int lote) {
+            int i = posicaoApos(buscaId, buscaOrdem);
+            for (int k = 0; i >= 0 && k < lote && pendentes > 0; i = proximo(i)) {
+                if (documento(i) < 0) {
+                    documento(i, busca.indexar(i, titulo(i), descr(i)));
+                    pendentes--;
+                    k++;
+                }
+                buscaId = id(i);
+                buscaOrdem = ordem(i);
+            }
+            return pendentes > 0;
+        }
+
+        /**
+         * @return Quantidade de tarefas ainda fora do índice de busca.
+         */
+        int pendentesBusca() { return pendentes; }
+
+        /**
+         * @return Quantidade de termos distintos no índice de busca.
+         */
+        int termosBusca() { return busca.termosDistintos(); }
+
+        /**
+         * Estatísticas do quadro em JSON (ver {@link Estatisticas#json}), sem percorrer as tarefas.
+         * Deve rodar sob a trava de leitura, e não dentro de ler().
+         */
+        String estatisticas(long agora, int intervalo, long criadoDesde) {
+            return estatisticas.json(agora, intervalo, criadoDesde);
+        }
+
+        /**
+         * @return Quantidade de tarefas com o status informado (consulta O(1) no índice).
+         */
+        int contar(int st) { return porStatus.get(st).size(); }
+
+        /**
+         * @return A posição da tarefa mais antiga, ou -1 se não houver tarefas.
+         */
+        int primeiro() { return cabeca; }
+
+        /**
+         * Encontra onde retomar uma leitura em ordem de criação interrompida depois da tarefa informada.
+         * Se essa tarefa ainda existe, retorna a seguinte; se foi excluída no meio tempo, procura a primeira
+         * tarefa criada depois dela (O(n), somente nesse caso raro).
+         * @param id O ID da última tarefa lida, ou null para começar do início.
+         * @param ordem A sequência de criação da última tarefa lida.
+         * @return A posição da próxima tarefa, ou -1 no fim.
+         */
+        int posicaoApos(String id, long ordem) {
+            if (id == null) return cabeca;
+            int i = buscar(id);
+            if (i >= 0 && ordem(i) == ordem) return proximo(i);
+            for (i = cabeca; i >= 0 && ordem(i) <= ordem; i = proximo(i)) {
+                // Avança até a primeira tarefa criada depois da última lida
+            }
+            return i;
+        }
+
+        /**
+         * @return A quantidade de tarefas ativas.
+         */
+        int tamanho() { return n; }
+
+        /**
+         * @return A versão atual do conteúdo; muda a cada criação, alteração ou exclusão.
+         */
+        long versao() { return versao; }
+
+        /**
+         * @return A memória estimada ocupada pelas tarefas, em bytes.
+         */
+        long bytes() { return bytes; }
+
+        /**
+         * @return A posição da tarefa com o ID informado, ou -1 se não existir.
+         */
+        int buscar(String id) {
+            long c = codigo(id, false);
+            return c == Long.MIN_VALUE ? -1 : indice.get(c);
+        }
+
+        /**
+         * @return true se mais da metade das posições usadas são lápides ou mais da metade da arena
+         *         de textos é lixo.
+         */
+        boolean fragmentado() { return alto - n > alto / 2 || textos.lixo() > textos.usados() / 2; }
+
+        /**
+         * Estima a memória de uma tarefa: custo fixo mais os bytes dos textos na arena e no índice de busca
+         * (sem descontar a deduplicação).
+         */
+        static long custo(String titulo, String descr) {
+            return BYTES_POR_TAREFA + PESO_TEXTO * (ArenaTextos.tamanho(titulo) + ArenaTextos.tamanho(descr));
+        }
+
+        /**
+         * @return O custo estimado da tarefa na posição informada, igual a custo(titulo, descr).
+         */
+        long custo(int i) {
+            int s = i >>> SEG_BITS, o = i & SEG_MASK;
+            return BYTES_POR_TAREFA + PESO_TEXTO * (textos.tamanho(titulos[s][o]) + textos.tamanho(descrs[s][o]));
+        }
+
+        /**
+         * Verifica se cabe mais uma tarefa com o custo informado.
+         * @throws CapacidadeExcedidaException Se o limite de tarefas ou de memória seria ultrapassado.
+         */
+        void reservar(long custo) {
+            reservar(1, custo);
+        }
+
+        /**
+         * Verifica se o saldo de um lote cabe: quantidade e custo líquidos (criações menos exclusões).
+         * @throws CapacidadeExcedidaException Se o limite de tarefas ou de memória seria ultrapassado.
+         */
+        void reservar(int quantidade, long custo) {
+            if ((long) n + quantidade > maxTarefas)
+                throw new CapacidadeExcedidaException("limite de " + maxTarefas + " tarefas atingido");
+            if (bytes + custo > maxBytes)
+                throw new CapacidadeExcedidaException("limite de memória de " + (maxBytes >> 20) + " MB atingido");
+        }
+
+        /**
+         * Cria uma nova tarefa com status TODO, gerando um ID único.
+         * @return A posição da tarefa criada.
+         * @throws CapacidadeExcedidaException Se o limite configurado seria ultrapassado.
+         */
+        int criar(String titulo, String descr) {
+            reservar(custo(titulo, descr));
+            long id;
+            do {
+                // Gera um ID único para a tarefa: os 32 bits altos do UUID (seus 8 primeiros dígitos)
+                id = UUID.randomUUID().getMostSignificantBits() >>> 32;
+            } while (indice.get(id) >= 0); // Sorteia de novo em caso de colisão
+            // Define o status inicial como TODO (0) e o timestamp de criação, que é também a entrada no status
+            long agora = System.currentTimeMillis();
+            int i = inserir(id, textos.guardar(titulo, false), textos.guardar(descr, false), 0, agora, agora,
+                    ++ultimaOrdem);
+            documento(i, busca.indexar(i, titulo, descr));
+            return i;
+        }
+
+        /**
+         * Adiciona uma tarefa em uma posição livre (ou nova) e a coloca no fim da lista em ordem de criação.
+         * Não aplica os limites: é usado também na carga, que nunca deve descartar dados já gravados.
+         * A tarefa fica pendente no índice de busca até a próxima chamada de {@link #indexarPendentes}.
+         * @param desde Timestamp da entrada no status atual.
+         * @return A posição da tarefa inserida.
+         */
+        int inserir(String id, String titulo, String descr, int st, long criado, long desde) {
+            int i = inserir(codigo(id, true), textos.guardar(titulo, false), textos.guardar(descr, false), st, criado,
+                    desde, ++ultimaOrdem);
+            pendentes++; // Indexada depois, por indexarPendentes(), para não atrasar a carga
+            return i;
+        }
+
+        /**
+         * Não indexa os textos para a busca: quem chama registra o documento da tarefa.
+         * @param id O código do ID (ver codigo()).
+         * @param titulo A referência do título na arena.
+         * @param descr A referência da descrição na arena.
+         */
+        private int inserir(long id, long titulo, long descr, int st, long criado, long desde, long ordem) {
+            int i;
+            if (livre >= 0) {
+                i = livre; // Reaproveita a posição liberada mais recentemente
+                livre = proximo(i);
+            } else {
+                if (alto == Integer.MAX_VALUE) throw new CapacidadeExcedidaException("endereçamento esgotado");
+                i = alto++; // Usa uma posição nunca ocupada
+                garantirSegmento(i);
+            }
+            int s = i >>> SEG_BITS, o = i & SEG_MASK;
+            ids[s][o] = id;
+            titulos[s][o] = titulo;
+            descrs[s][o] = descr;
+            status[s][o] = (byte) st;
+            criados[s][o] = criado;
+            desdes[s][o] = desde;
+            ordens[s][o] = ordem;
+            documentos[s][o] = -1;
+            // Encadeia a tarefa no fim da lista em ordem de criação
+            anterior(i, cauda);
+            proximo(i, -1);
+            if (cauda >= 0) proximo(cauda, i);
+            else cabeca = i;
+            cauda = i;
+            indice.put(id, i); // Registra o ID no índice
+            porStatus.get(st).put(new Chave(criado, ordem), i); // Registra no índice do status
+            estatisticas.adicionar(st, criado, desde);
+            bytes += custo(i);
+            n++; // Incrementa o contador de tarefas
+            versao++;
+            return i;
+        }
+
+        /**
+         * Substitui os dados de uma tarefa existente, mantendo sua posição e ordem (usado na reaplicação do log).
+         */
+        void atualizar(int i, String titulo, String descr, int st, long criado, long desde) {
+            int s = i >>> SEG_BITS, o = i & SEG_MASK;
+            bytes -= custo(i);
+            porStatus.get(status[s][o]).remove(chave(i));
+            porStatus.get(st).put(new Chave(criado, ordem(i)), i);
+            estatisticas.remover(status[s][o], criados[s][o], desdes[s][o]);
+            estatisticas.adicionar(st, criado, desde);
+            // Grava os novos textos antes de liberar os antigos: se forem iguais, a cópia deduplicada é reaproveitada
+            long t = textos.guardar(titulo, false), d = textos.guardar(descr, false);
+            textos.liberar(titulos[s][o], false);
+            textos.liberar(descrs[s][o], false);
+            titulos[s][o] = t;
+            descrs[s][o] = d;
+            status[s][o] = (byte) st;
+            criados[s][o] = criado;
+            desdes[s][o] = desde;
+            if (documentos[s][o] >= 0) { // Pendente continua pendente: será indexada com os textos novos
+                busca.remover(documentos[s][o]);
+                documentos[s][o] = busca.indexar(i, titulo, descr);
+                purgarBuscaSeNecessario();
+            }
+            bytes += custo(i);
+            versao++;
+        }
+
+        /**
+         * Altera o status da tarefa na posição informada.
+         * @param quando Timestamp da mudança (a entrada no novo status); ignorado se o status não muda.
+         */
+        void definirStatus(int i, int st, long quando) {
+            int atual = status(i);
+            if (atual != st) {
+                Chave c = chave(i);
+                porStatus.get(atual).remove(c); // Move a tarefa entre os índices por status
+                porStatus.get(st).put(c, i);
+                estatisticas.mudarStatus(atual, desde(i), st, quando, criado(i));
+                status[i >>> SEG_BITS][i & SEG_MASK] = (byte) st;
+                desdes[i >>> SEG_BITS][i & SEG_MASK] = quando;
+            }
+            versao++;
+        }
+
+        /**
+         * Remove a tarefa em O(1): desencadeia a posição da lista em ordem de criação, marca a posição
+         * como lápide e a devolve à lista de posições livres. As demais tarefas não se movem.
+         */
+        void remover(int i) {
+            int s = i >>> SEG_BITS, o = i & SEG_MASK;
+            long id = ids[s][o];
+            indice.remove(id); // Remove o ID do índice
+            porStatus.get(status[s][o]).remove(chave(i)); // Remove do índice do status
+            estatisticas.remover(status[s][o], criados[s][o], desdes[s][o]);
+            bytes -= custo(i);
+            int ant = anterior(i), prox = proximo(i);
+            if (ant >= 0) proximo(ant, prox);
+            else cabeca = prox;
+            if (prox >= 0) anterior(prox, ant);
+            else cauda = ant;
+            // Libera os textos da tarefa na arena (o espaço volta na próxima compactação)
+            if (id < 0) textos.liberar(~id, true);
+            textos.liberar(titulos[s][o], false);
+            textos.liberar(descrs[s][o], false);
+            if (documentos[s][o] < 0) {
+                pendentes--;
+            } else {
+                busca.remover(documentos[s][o]); // Só marca o documento; as listas são limpas em lote
+                purgarBuscaSeNecessario();
+            }
+            proximo(i, livre);
+            livre = i;
+            n--; // Decrementa o contador de tarefas
+            versao++;
+        }
+
+        /**
+         * Limpa as listas do índice de busca quando os documentos excluídos passam dos vivos, e aponta as
+         * tarefas para os documentos renumerados.
+         */
+        private void purgarBuscaSeNecessario() {
+            if (!busca.fragmentado()) return;
+            busca.purgar();
+            for (int d = 0, total = busca.documentos(); d < total; d++) documento(busca.posicao(d), d);
+        }
+
+        /**
+         * Remove todas as tarefas e libera os segmentos.
+         */
+        void limpar() {
+            limpar(false);
+        }
+
+        /**
+         * @param manterBusca true para preservar o índice de busca (compactação, que só muda as posições).
+         */
+        private void limpar(boolean manterBusca) {
+            ids = new long[4][];
+            titulos = new long[4][];
+            descrs = new long[4][];
+            status = new byte[4][];
+            criados = new long[4][];
+            desdes = new long[4][];
+            ordens = new long[4][];
+            anterior = new int[4][];
+            proximo = new int[4][];
+            documentos = new int[4][];
+            segmentos = 0;
+            n = alto = 0;
+            cabeca = cauda = livre = -1;
+            bytes = 0;
+            ultimaOrdem = 0;
+            versao++;
+            indice.clear();
+            textos.limpar();
+            if (!manterBusca) busca.limpar();
+            pendentes = 0;
+            buscaId = null;
+            porStatus.forEach(TreeMap::clear);
+            estatisticas.limpar();
+        }
+
+        /**
+         * Garante que o segmento da posição informada está alocado, dobrando o diretório se preciso.
+         */
+        private void garantirSegmento(int i) {
+            int s = i >>> SEG_BITS;
+            if (s < segmentos) return;
+            if (s >= ids.length) {
+                int cap = ids.length * 2; // Copia apenas os ponteiros dos segmentos
+                ids = Arrays.copyOf(ids, cap);
+                titulos = Arrays.copyOf(titulos, cap);
+                descrs = Arrays.copyOf(descrs, cap);
+                status = Arrays.copyOf(status, cap);
+                criados = Arrays.copyOf(criados, cap);
+                desdes = Arrays.copyOf(desdes, cap);
+                ordens = Arrays.copyOf(ordens, cap);
+                anterior = Arrays.copyOf(anterior, cap);
+                proximo = Arrays.copyOf(proximo, cap);
+                documentos = Arrays.copyOf(documentos, cap);
+            }
+            ids[s] = new long[SEG];
+            titulos[s] = new long[SEG];
+            descrs[s] = new long[SEG];
+            status[s] = new byte[SEG];
+            criados[s] = new long[SEG];
+            desdes[s] = new long[SEG];
+            ordens[s] = new long[SEG];
+            anterior[s] = new int[SEG];
+            proximo[s] = new int[SEG];
+            documentos[s] = new int[SEG];
+            segmentos = s + 1;
+        }
+
+        /**
+         * Cópia congelada das tarefas vivas, em ordem de criação: as colunas primitivas em arrays densos e o
+         * diretório de blocos da arena. Como os bytes gravados na arena nunca mudam, os textos podem ser
+         * decodificados depois, fora da trava, mesmo que o armazenamento seja alterado ou compactado.
+         */
+        record Captura(long[] ids, long[] titulos, long[] descrs, int[] status, long[] criados, long[] desdes,
+                       long[] ordens, byte[][] blocos, int total) {
+            String id(int k) { return TaskStore.id(ids[k], blocos); }
+            String titulo(int k) { return ArenaTextos.texto(blocos, titulos[k]); }
+            String descr(int k) { return ArenaTextos.texto(blocos, descrs[k]); }
+
+            /**
+             * Decodifica os textos da cópia.
+             * @return O snapshot com as tarefas da cópia.
+             */
+            Snapshot snapshot() {
+                Snapshot s = new Snapshot(new String[total], new String[total], new String[total], status, criados, desdes,
+                        total);
+                for (int k = 0; k < total; k++) {
+                    s.ids()[k] = id(k);
+                    s.titulos()[k] = titulo(k);
+                    s.descrs()[k] = descr(k);
+                }
+                return s;
+            }
+        }
+
+        /**
+         * Copia as colunas das tarefas vivas sem decodificar textos (O(n) em cópias de primitivos).
+         * Deve rodar sob a trava de escrita.
+         * @return A cópia congelada.
+         */
+        Captura congelar() {
+            Captura c = new Captura(new long[n], new long[n], new long[n], new int[n], new long[n], new long[n],
+                    new long[n], textos.blocos(), n);
+            int k = 0;
+            for (int i = cabeca; i >= 0; i = proximo(i), k++) {
+                int s = i >>> SEG_BITS, o = i & SEG_MASK;
+                c.ids()[k] = ids[s][o];
+                c.titulos()[k] = titulos[s][o];
+                c.descrs()[k] = descrs[s][o];
+                c.status()[k] = status[s][o];
+                c.criados()[k] = criados[s][o];
+                c.desdes()[k] = desdes[s][o];
+                c.ordens()[k] = ordens[s][o];
+            }
+            return c;
+        }
+
+        /**
+         * Copia as tarefas vivas, em ordem de criação, para arrays densos com os textos decodificados.
+         * @return A cópia das tarefas.
+         */
+        Snapshot capturar() {
+            return congelar().snapshot();
+        }
+
+        /**
+         * Reorganiza as posições a partir de uma cópia em ordem de criação: as tarefas passam a ocupar
+         * 0..n-1 nessa ordem, as lápides e os segmentos vazios desaparecem, a arena de textos é recriada sem
+         * lixo e o índice de IDs é reconstruído. O índice de busca não é refeito: os documentos só passam
+         * a apontar para as novas posições.
+         * As sequências de criação são preservadas.
+         * @param c A cópia obtida por congelar() sem mutações desde então.
+         */
+        void compactar(Captura c) {
+            long ultima = ultimaOrdem, v = versao;
+            String cursorId = buscaId; // IDs e sequências não mudam: o cursor da indexação continua válido
+            long cursorOrdem = buscaOrdem;
+            int[] docs = new int[n]; // Sem mutações desde congelar(): a ordem da lista é a da cópia
+            int j = 0;
+            for (int i = cabeca; i >= 0; i = proximo(i)) docs[j++] = documento(i);
+            limpar(true);
+            byte[][] origem = c.blocos();
+            for (int k = 0; k < c.total(); k++) {
+                long id = c.ids()[k];
+                if (id < 0) id = ~textos.copiar(origem, ~id, true);
+                // Os textos são copiados da arena antiga sem decodificar
+                int i = inserir(id, textos.copiar(origem, c.titulos()[k], false), textos.copiar(origem, c.descrs()[k], false),
+                        c.status()[k], c.criados()[k], c.desdes()[k], c.ordens()[k]);
+                documento(i, docs[k]);
+                busca.mover(docs[k], i);
+                if (docs[k] < 0) pendentes++;
+            }
+            ultimaOrdem = ultima;
+            versao = v; // O conteúdo não mudou: caches continuam válidos
+            buscaId = cursorId;
+            buscaOrdem = cursorOrdem;
+        }
+    }
+
+    /**
+     * Cache da listagem completa serializada, válido para uma única versão do armazenamento.
+     * Como a versão muda a cada criação, mudança de status ou exclusão, nenhuma invalidação explícita
+     * é necessária: a primeira leitura depois de uma mutação serializa de novo.
+     */
+    static final class ListCache {
+        /**
+         * Lista serializada de uma versão, com a compressão gzip calculada sob demanda.
+         */
+        static final class Entrada {
+            final String epoca; // Carga do quadro em que a versão foi serializada
+            final long versao; // Versão do armazenamento serializada
+            final byte[] json; // Array JSON em UTF-8
+            final String etag; // ETag forte: época da carga + versão, o mesmo formato dos IDs de evento
+            final String etagGzip; // ETag do corpo em gzip: o mesmo com o sufixo "-gz"
+            private volatile byte[] gzip; // json comprimido, calculado na primeira requisição que aceitar gzip
+
+            Entrada(String epoca, long versao, byte[] json) {
+                this.epoca = epoca;
+                this.versao = versao;
+                this.json = json;
+                this.etag = "\"" + epoca + "-" + versao + "\"";
+                this.etagGzip = "\"" + epoca + "-" + versao + SUFIXO_GZIP + "\"";
+            }
+
+            byte[] gzip() {
+                byte[] g = gzip;
+                if (g == null) gzip = g = App.gzip(json); // Corrida benigna: no pior caso comprime duas vezes
+                return g;
+            }
+        }
+
+        /**
+         * Época da carga e versão do armazenamento, lidas juntas.
+         */
+        private record Versao(String epoca, long versao) {}
+
+        private final Quadro quadro; // Quadro cuja lista é mantida em cache
+        private volatile Entrada atual; // Última lista serializada
+
+        ListCache(Quadro quadro) {
+            this.quadro = quadro;
+        }
+
+        /**
+         * @return A lista da versão atual (serializando se preciso), ou null se ela é grande demais para o cache.
+         */
+        Entrada obter() {
+            TaskStore tarefas = quadro.tarefas;
+            ChangeFeed feed = quadro.feed;
+            // A época só muda sob a trava de escrita (recarga da réplica), então é lida junto com a versão
+            Versao chave = tarefas.ler(() -> new Versao(feed.epoca(), tarefas.versao()));
+            Entrada e = atual;
+            if (e != null && e.epoca.equals(chave.epoca) && e.versao == chave.versao) return e;
+            if (tarefas.bytes() > CACHE_LISTA_MAX) return null;
+            synchronized (this) {
+                e = atual;
+                // Outra thread serializou enquanto esperávamos
+                if (e != null && e.epoca.equals(chave.epoca) && e.versao >= chave.versao) return e;
+                // Época, versão e bytes lidos na mesma leitura consistente
+                e = tarefas.ler(() -> new Entrada(feed.epoca(), tarefas.versao(), quadro.serializarLista()));
+                atual = e;
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Feed de mudanças (Server-Sent Events) em GET /api/tasks/events.
+     * Cada criação, mudança de status ou exclusão vira um evento cujo ID é "época-versão", a mesma versão
+     * do armazenamento que aparece no ETag da listagem: quem baixou a lista assina a partir daquele ETag e
+     * não perde nem repete mudanças. A época identifica a execução e a carga do quadro, porque um quadro
+     * descarregado e carregado de novo recomeça as versões. Os eventos ficam em um anel de tamanho fixo
+     * (kanban.feedEventos) e são codificados uma única vez, compartilhados por todos os assinantes. Um
+     * cliente que reconecta com Last-Event-ID recebe o que perdeu; se o ID é de outra execução ou carga, ou
+     * já saiu do anel, recebe "reset" e deve baixar a lista de novo.
+     * <p>As conexões não prendem threads do servidor: o handler envia os cabeçalhos, registra o assinante
+     * e retorna. Um pequeno pool entrega os eventos, e cada assinante é atendido por no máximo uma tarefa
+     * de cada vez; quem não consegue receber (conexão caída) é descartado no primeiro erro de escrita.
+     */
+    static final class ChangeFeed {
+        static final long PING_MS = 15_000; // Comentário periódico que mantém proxies abertos e detecta conexões caídas
+
+        /**
+         * Evento já codificado no formato text/event-stream.
+         */
+        record Evento(long seq, byte[] bytes) {}
+
+        // Numera as cargas de todos os quadros: cada uma recomeça as versões e precisa de IDs próprios
+        private static final AtomicLong cargas = new AtomicLong();
+
+        private final Evento[] anel; // Últimos eventos, do mais antigo (inicio) ao mais novo
+        private int inicio = 0, qtd = 0;
+        private volatile String epoca = EPOCA + "." + cargas.incrementAndGet(); // Prefixo dos IDs desta carga
+        private long ultimo; // Sequência do último evento publicado
+        private long descartadoAte; // Maior sequência que não pode mais ser retomada pelo anel
+        private final List<Assinante> assinantes = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean despachoPendente = new AtomicBoolean();
+        private final ScheduledFuture<?> pings;
+
+        // Pool de envio compartilhado pelos feeds de todos os quadros
+        private static final ScheduledExecutorService envio = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "kanban-feed");
+            t.setDaemon(true);
+            return t;
+        });
+
+        ChangeFeed(int capacidade) {
+            this.anel = new Evento[Math.max(16, capacidade)];
+            this.pings = envio.scheduleWithFixedDelay(this::ping, PING_MS, PING_MS, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Para os pings do feed (o quadro foi descarregado e não tem assinantes).
+         */
+        void fechar() {
+            pings.cancel(false);
+        }
+
+        /**
+         * Define a versão inicial do armazenamento (depois de carregar): só é possível retomar a partir dela.
+         * Cada chamada abre uma nova época, já que a versão recarregada pode repetir números já entregues
+         * com outro conteúdo.
+         */
+        synchronized void iniciar(long versao) {
+            epoca = EPOCA + "." + cargas.incrementAndGet();
+            inicio = qtd = 0;
+            Arrays.fill(anel, null);
+            ultimo = descartadoAte = versao;
+        }
+
+        /**
+         * Publica um evento. Deve ser chamado sob a trava de escrita, logo depois da mutação, para que a
+         * sequência seja a versão do armazenamento e a ordem dos eventos seja a ordem das mutações.
+         * @param seq A versão do armazenamento depois da mutação.
+         * @param tipo "criada", "status" ou "excluida".
+         * @param dados O objeto JSON do evento, em UTF-8.
+         */
+        void publicar(long seq, String tipo, byte[] dados) {
+            byte[] cab = ("id: " + epoca + "-" + seq + "\nevent: " + tipo + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+            byte[] b = Arrays.copyOf(cab, cab.length + dados.length + 2);
+            System.arraycopy(dados, 0, b, cab.length, dados.length);
+            b[b.length - 2] = '\n';
+            b[b.length - 1] = '\n';
+            synchronized (this) {
+                if (qtd == anel.length) {
+                    descartadoAte = anel[inicio].seq; // O mais antigo sai do anel
+                    inicio = (inicio + 1) % anel.length;
+                    qtd--;
+                }
+                anel[(inicio + qtd++) % anel.length] = new Evento(seq, b);
+                ultimo = seq;
+            }
+            if (!assinantes.isEmpty() && despachoPendente.compareAndSet(false, true)) envio.execute(this::despachar);
+        }
+
+        /**
+         * @return Os eventos posteriores a seq, em ordem, ou null se seq já saiu do anel.
+         */
+        synchronized List<Evento> desde(long seq) {
+            if (seq < descartadoAte || seq > ultimo) return null;
+            int n = 0;
+            while (n < qtd && anel[(inicio + qtd - 1 - n) % anel.length].seq > seq) n++;
+            List<Evento> r = new ArrayList<>(n);
+            for (int k = qtd - n; k < qtd; k++) r.add(anel[(inicio + k) % anel.length]);
+            return r;
+        }
+
+        synchronized long ultimo() {
+            return ultimo;
+        }
+
+        /**
+         * @return A época da carga atual: o prefixo dos IDs de evento e dos ETags da listagem.
+         */
+        String epoca() {
+            return epoca;
+        }
+
+        int assinantes() {
+            return assinantes.size();
+        }
+
+        /**
+         * Converte um Last-Event-ID ("época-versão") na sequência a retomar.
+         * @return A sequência, ou -1 se o ID é de outra execução ou carga do quadro, ou é inválido.
+         */
+        long sequencia(String idEvento) {
+            if (idEvento == null) return -1;
+            String s = idEvento.trim();
+            if (s.startsWith("\"")) s = stripQuotes(s); // Aceita também o ETag da listagem, com aspas
+            if (s.endsWith(SUFIXO_GZIP)) s = s.substring(0, s.length() - SUFIXO_GZIP.length()); // E o do corpo em gzip
+            int h = s.lastIndexOf('-');
+            if (h < 0 || !epoca.equals(s.substring(0, h))) return -1;
+            return parseLongSafe(s.substring(h + 1), -1);
+        }
+
+        /**
+         * Registra um assinante cuja resposta (200, text/event-stream) já foi iniciada.
+         * @param ex A requisição; fica aberta até o cliente desconectar.
+         * @param ultimoId O último ID de evento conhecido pelo cliente, ou null para começar do evento atual.
+         */
+        void assinar(HttpExchange ex, String ultimoId) {
+            Assinante a = new Assinante(ex);
+            synchronized (this) {
+                long desde = sequencia(ultimoId); // Sob a trava: a época não muda entre a conversão e a posição
+                if (ultimoId == null) a.ultimo = ultimo;
+                else if (desde < descartadoAte || desde > ultimo) a.reset = true; // Outra execução, inválido ou fora do anel
+                else a.ultimo = desde;
+            }
+            assinantes.add(a);
+            a.agendar();
+        }
+
+        private void despachar() {
+            despachoPendente.set(false);
+            for (Assinante a : assinantes) a.agendar();
+        }
+
+        private void ping() {
+            for (Assinante a : assinantes) {
+                a.ping = true;
+                a.agendar();
+            }
+        }
+
+        /**
+         * Uma conexão de eventos e a posição dela no feed.
+         */
+        final class Assinante {
+            final HttpExchange ex;
+            final OutputStream out;
+            final AtomicBoolean agendado = new AtomicBoolean();
+            long ultimo; // Último evento entregue (só acessado pela tarefa de envio)
+            boolean reset; // Precisa avisar o cliente para baixar a lista de novo
+            volatile boolean ping;
+
+            Assinante(HttpExchange ex) {
+                this.ex = ex;
+                this.out = ex.getResponseBody();
+            }
+
+            void agendar() {
+                if (agendado.compareAndSet(false, true)) envio.execute(this::enviar);
+            }
+
+            private void enviar() {
+                try {
+                    while (true) {
+                        boolean escreveu = false;
+                        List<Evento> novos = reset ? null : desde(ultimo);
+                        if (novos == null) {
+                            // Ficou para trás do anel (ou veio de outra execução): recomeça do evento atual
+                            long atual;
+                            String id;
+                            synchronized (ChangeFeed.this) {
+                                atual = ChangeFeed.this.ultimo;
+                                id = epoca + "-" + atual;
+                            }
+                            out.write(("id: " + id + "\nevent: reset\ndata: {}\n\n").getBytes(StandardCharsets.UTF_8));
+                            ultimo = atual;
+                            reset = false;
+                            escreveu = true;
+                        } else {
+                            for (Evento e : novos) {
+                                out.write(e.bytes());
+                                ultimo = e.seq();
+                                escreveu = true;
+                            }
+                        }
+                        if (ping) {
+                            ping = false;
+                            if (!escreveu) out.write(":\n\n".getBytes(StandardCharsets.US_ASCII));
+                            escreveu = true;
+                        }
+                        if (escreveu) {
+                            out.flush();
+                            continue;
+                        }
+                        agendado.set(false);
+                        // Um evento publicado entre desde() e a liberação acima não pode ficar sem entrega
+                        if ((ChangeFeed.this.ultimo() == ultimo && !ping) || !agendado.compareAndSet(false, true)) return;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    assinantes.remove(this); // Cliente desconectou
+                    ex.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Indica que o corpo da requisição passou do tamanho máximo aceito (resposta 413).
+     */
+    static final class CorpoExcedidoException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CorpoExcedidoException(long limite) {
+            super("corpo maior que " + limite + " bytes");
+        }
+    }
+
+    /**
+     * Campos de tarefa extraídos de um objeto JSON da requisição. O leitor de cada thread reutiliza a
+     * mesma instância a cada requisição; operações de lote recebem cópias.
+     */
+    static final class Campos {
+        String op, id, titulo, descricao; // null quando ausentes
+        int status; // Válido apenas se temStatus
+        boolean temStatus;
+
+        void limpar() {
+            op = id = titulo = descricao = null;
+            status = 0;
+            temStatus = false;
+        }
+
+        Campos copia() {
+            Campos c = new Campos();
+            c.op = op;
+            c.id = id;
+            c.titulo = titulo;
+            c.descricao = descricao;
+            c.status = status;
+            c.temStatus = temStatus;
+            return c;
+        }
+    }
+
+    /**
+     * Leitor JSON de passada única sobre os bytes UTF-8 do corpo da requisição.
+     * Cada chave é comparada byte a byte com os campos conhecidos; somente os valores desses campos viram
+     * Strings, e os demais (inclusive objetos e arrays aninhados) são pulados sem alocação. Strings sem
+     * escape são decodificadas direto do buffer; com escape (\n, \", \\uXXXX, pares substitutos), passam
+     * por um buffer auxiliar reutilizado. O custo é o de uma leitura do corpo, qualquer que seja o número
+     * de campos consultados. O buffer do corpo, o auxiliar e o holder de Campos pertencem à thread.
+     */
+    static final class JsonReader {
+        static final int MAX_CORPO = (int) Math.min(Integer.MAX_VALUE - 8,
+                parseLongSafe(config("maxCorpoKb", ""), 64) << 10); // Criação e mudança de status
+        static final int MAX_LOTE = (int) Math.min(Integer.MAX_VALUE - 8,
+                parseLongSafe(config("maxLoteMb", ""), 32) << 20); // POST /api/tasks/batch
+        private static final int BUF_INICIAL = 8 << 10; // Buffer do corpo mantido por thread
+        private static final int BUF_RETIDO = 1 << 20; // Buffers maiores (lotes) são liberados após o uso (liberar())
+        private static final ThreadLocal<JsonReader> DA_THREAD = ThreadLocal.withInitial(JsonReader::new);
+
+        // Campos conhecidos, na ordem dos índices usados em atribuir()
+        private static final byte[][] CHAVES = {
+                "op".getBytes(StandardCharsets.US_ASCII), "id".getBytes(StandardCharsets.US_ASCII),
+                "titulo".getBytes(StandardCharsets.US_ASCII), "descricao".getBytes(StandardCharsets.US_ASCII),
+                "status".getBytes(StandardCharsets.US_ASCII)};
+        private static final int STATUS = 4;
+
+        private byte[] b = new byte[BUF_INICIAL]; // Corpo da requisição
+        private int n, p; // Tamanho do corpo e posição de leitura
+        private byte[] aux = new byte[256]; // Strings com escape, já decodificadas para UTF-8
+        private int auxN;
+        private final Campos campos = new Campos();
+
+        /**
+         * Lê o corpo da requisição no buffer da thread, recusando-o se passar do limite
+         * (pelo Content-Length, quando informado, ou durante a leitura). O Content-Length só dimensiona o
+         * buffer até BUF_RETIDO; acima disso o buffer cresce com os bytes que de fato chegam, para que um
+         * cabeçalho sem corpo não faça cada thread alocar o limite inteiro.
+         * @param ex A requisição.
+         * @param max O tamanho máximo aceito, em bytes.
+         * @return O leitor da thread, posicionado no início do corpo.
+         * @throws CorpoExcedidoException Se o corpo é maior que max.
+         */
+        static JsonReader corpo(HttpExchange ex, int max) throws IOException {
+            long declarado = parseLongSafe(ex.getRequestHeaders().getFirst("Content-Length"), -1);
+            if (declarado > max) throw new CorpoExcedidoException(max);
+            JsonReader r = DA_THREAD.get();
+            if (r.b.length > BUF_RETIDO) r.b = new byte[BUF_INICIAL];
+            if (declarado > r.b.length) r.b = new byte[(int) Math.min(declarado, BUF_RETIDO)];
+            r.n = r.p = 0;
+            InputStream in = ex.getRequestBody();
+            while (true) {
+                if (r.n >= max) {
+                    if (in.read() < 0) break; // Exatamente no limite
+                    throw new CorpoExcedidoException(max);
+                }
+                if (r.n == r.b.length) r.b = Arrays.copyOf(r.b, (int) Math.min(max, 2L * r.n));
+                int k = in.read(r.b, r.n, Math.min(r.b.length, max) - r.n);
+                if (k < 0) break;
+                r.n += k;
+            }
+            return r;
+        }
+
+        /**
+         * Devolve o buffer da thread ao tamanho inicial se um corpo grande (um lote) o fez crescer além de
+         * BUF_RETIDO. Chamado depois de extrair os campos, que não dependem mais do buffer.
+         */
+        static void liberar() {
+            JsonReader r = DA_THREAD.get();
+            if (r.b.length > BUF_RETIDO) r.b = new byte[BUF_INICIAL];
+        }
+
+        /**
+         * Posiciona o leitor da thread sobre uma cópia de um corpo já em memória (usado pelos benchmarks).
+         * @return O leitor da thread, posicionado no início do corpo.
+         */
+        static JsonReader de(byte[] corpo) {
+            JsonReader r = DA_THREAD.get();
+            if (r.b.length < corpo.length) r.b = new byte[corpo.length];
+            System.arraycopy(corpo, 0, r.b, 0, corpo.length);
+            r.n = corpo.length;
+            r.p = 0;
+            return r;
+        }
+
+        /**
+         * Lê o corpo inteiro como um único objeto e devolve seus campos conhecidos.
+         * @return O holder da thread, válido até a próxima leitura nesta thread.
+         * @throws IllegalArgumentException Se o corpo não é um objeto JSON válido.
+         */
+        Campos objeto() {
+            objeto(campos);
+            fim();
+            return campos;
+        }
+
+        /**
+         * Lê o corpo inteiro como um array de objetos (um lote de operações).
+         * @throws IllegalArgumentException Se o corpo não é um array de objetos JSON.
+         */
+        List<Campos> lote() {
+            List<Campos> ops = new ArrayList<>();
+            espacos();
+            esperar('[');
+            espacos();
+            if (!consumir(']')) {
+                do {
+                    objeto(campos);
+                    ops.add(campos.copia());
+                    espacos();
+                } while (consumir(','));
+                esperar(']');
+            }
+            fim();
+            return ops;
+        }
+
+        private void objeto(Campos c) {
+            c.limpar();
+            espacos();
+            esperar('{');
+            espacos();
+            if (consumir('}')) return;
+            do {
+                espacos();
+                int campo = chave();
+                espacos();
+                esperar(':');
+                espacos();
+                if (campo < 0) pular();
+                else atribuir(c, campo);
+                espacos();
+            } while (consumir(','));
+            esperar('}');
+        }
+
+        /**
+         * Lê uma chave e devolve o índice do campo conhecido correspondente, ou -1.
+         */
+        private int chave() {
+            if (p >= n || b[p] != '"') throw erro("esperada uma chave entre aspas");
+            int ini = p + 1;
+            if (!texto()) return indice(b, ini, p - 1 - ini); // Sem escapes: compara no próprio buffer
+            return indice(aux, 0, auxN);
+        }
+
+        private static int indice(byte[] a, int ini, int len) {
+            for (int k = 0; k < CHAVES.length; k++) {
+                if (Arrays.equals(a, ini, ini + len, CHAVES[k], 0, CHAVES[k].length)) return k;
+            }
+            return -1;
+        }
+
+        private void atribuir(Campos c, int campo) {
+            String v;
+            if (p < n && b[p] == '"') {
+                int ini = p + 1;
+                v = texto() ? new String(aux, 0, auxN, StandardCharsets.UTF_8)
+                        : new String(b, ini, p - 1 - ini, StandardCharsets.UTF_8);
+            } else {
+                int ini = p;
+                pular();
+                v = new String(b, ini, p - ini, StandardCharsets.US_ASCII); // Número ou literal, como texto
+                if ("null".equals(v)) v = null;
+            }
+            switch (campo) {
+                case 0 -> c.op = v;
+                case 1 -> c.id = v;
+                case 2 -> c.titulo = v;
+                case 3 -> c.descricao = v;
+                case STATUS -> {
+                    c.temStatus = v != null;
+                    c.status = parseIntSafe(v, 0);
+                }
+                default -> { }
+            }
+        }
+
+        /**
+         * Avança sobre uma string (p deve estar na aspa inicial) até depois da aspa final.
+         * @return false se não havia escapes (o conteúdo está em b, entre as aspas); true se havia, e
+         *         então o conteúdo decodificado está em aux[0, auxN).
+         */
+        private boolean texto() {
+            int ini = ++p;
+            while (p < n && b[p] != '"' && b[p] != '\\') p++;
+            if (p >= n) throw erro("string sem fim");
+            if (b[p] == '"') {
+                p++;
+                return false;
+            }
+            auxN = 0;
+            reservarAux(p - ini);
+            System.arraycopy(b, ini, aux, 0, p - ini);
+            auxN = p - ini;
+            while (true) {
+                if (p >= n) throw erro("string sem fim");
+                byte c = b[p++];
+                if (c == '"') return true;
+                reservarAux(4);
+                if (c != '\\') {
+                    aux[auxN++] = c;
+                    continue;
+                }
+                if (p >= n) throw erro("escape sem fim");
+                byte e = b[p++];
+                switch (e) {
+                    case 'n' -> aux[auxN++] = '\n';
+                    case 't' -> aux[auxN++] = '\t';
+                    case 'r' -> aux[auxN++] = '\r';
+                    case 'b' -> aux[auxN++] = '\b';
+                    case 'f' -> aux[auxN++] = '\f';
+                    case '"', '\\', '/' -> aux[auxN++] = e;
+                    case 'u' -> {
+                        int cp = hex4();
+                        // Par substituto escrito como dois escapes: \\uD83D\\uDE00
+                        if (Character.isHighSurrogate((char) cp) && p + 1 < n && b[p] == '\\' && b[p + 1] == 'u') {
+                            int q = p;
+                            p += 2;
+                            int baixo = hex4();
+                            if (Character.isLowSurrogate((char) baixo)) cp = Character.toCodePoint((char) cp, (char) baixo);
+                            else p = q; // Não forma par: o segundo escape é lido na próxima volta
+                        }
+                        utf8(cp);
+                    }
+                    default -> throw erro("escape inválido");
+                }
+            }
+        }
+
+        private int hex4() {
+            if (p + 4 > n) throw erro("escape \\u incompleto");
+            int v = 0;
+            for (int k = 0; k < 4; k++) {
+                int d = Character.digit(b[p++], 16);
+                if (d < 0) throw erro("escape \\u inválido");
+                v = v << 4 | d;
+            }
+            return v;
+        }
+
+        private void utf8(int cp) {
+            if (cp < 0x80) aux[auxN++] = (byte) cp;
+            else if (cp < 0x800) {
+                aux[auxN++] = (byte) (0xC0 | cp >> 6);
+                aux[auxN++] = (byte) (0x80 | cp & 0x3F);
+            } else if (cp >= 0x10000) {
+                aux[auxN++] = (byte) (0xF0 | cp >> 18);
+                aux[auxN++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                aux[auxN++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                aux[auxN++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate((char) cp)) {
+                aux[auxN++] = '?'; // Substituto isolado: mesmo comportamento de String.getBytes(UTF_8)
+            } else {
+                aux[auxN++] = (byte) (0xE0 | cp >> 12);
+                aux[auxN++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                aux[auxN++] = (byte) (0x80 | cp & 0x3F);
+            }
+        }
+
+        private void reservarAux(int mais) {
+            if (auxN + mais > aux.length) aux = Arrays.copyOf(aux, Math.max(aux.length * 2, auxN + mais));
+        }
+
+        /**
+         * Pula um valor qualquer sem decodificá-lo: string, número, literal, objeto ou array.
+         */
+        private void pular() {
+            if (p >= n) throw erro("valor ausente");
+            byte c = b[p];
+            if (c == '"') {
+                pularTexto();
+            } else if (c == '{' || c == '[') {
+                int profundidade = 0;
+                do {
+                    if (p >= n) throw erro("objeto ou array sem fim");
+                    c = b[p];
+                    if (c == '"') {
+                        pularTexto();
+                        continue;
+                    }
+                    if (c == '{' || c == '[') profundidade++;
+                    else if (c == '}' || c == ']') profundidade--;
+                    p++;
+                } while (profundidade > 0);
+            } else {
+                int ini = p;
+                while (p < n && (c = b[p]) != ',' && c != '}' && c != ']' && c > ' ') p++;
+                if (ini == p) throw erro("valor inesperado");
+            }
+        }
+
+        private void pularTexto() {
+            p++;
+            while (p < n && b[p] != '"') p += b[p] == '\\' ? 2 : 1;
+            if (p >= n) throw erro("string sem fim");
+            p++;
+        }
+
+        private void fim() {
+            espacos();
+            if (p != n) throw erro("conteúdo após o fim do documento");
+        }
+
+        private void espacos() {
+            while (p < n && (b[p] == ' ' || b[p] == '\n' || b[p] == '\r' || b[p] == '\t')) p++;
+        }
+
+        private boolean consumir(char c) {
+            if (p < n && b[p] == c) {
+                p++;
+                return true;
+            }
+            return false;
+        }
+
+        private void esperar(char c) {
+            if (!consumir(c)) throw erro(p >= n ? "fim inesperado, esperado '" + c + "'" : "esperado '" + c + "'");
+        }
+
+        private IllegalArgumentException erro(String msg) {
+            return new IllegalArgumentException("JSON inválido na posição " + p + ": " + msg);
+        }
+    }
+
+    /**
+     * Escritor JSON em streaming: codifica direto em UTF-8 em um buffer de tamanho fixo e descarrega no
+     * OutputStream quando ele enche. Strings são escapadas e codificadas em uma única passada,
+     * sem Strings, mapas ou arrays intermediários.
+     */
+    static final class JsonWriter {
+        private final OutputStream out; // Destino dos bytes
+        private final byte[] buf; // Buffer fixo
+        private int pos = 0; // Bytes ocupados no buffer
+
+        JsonWriter(OutputStream out, int tamanho) {
+            this.out = out;
+            this.buf = new byte[Math.max(64, tamanho)];
+        }
+
+        /**
+         * @return Quantidade de bytes ainda não descarregados.
+         */
+        int pendentes() {
+            return pos;
+        }
+
+        /**
+         * Escreve um caractere ASCII sem escape.
+         */
+        JsonWriter raw(char c) throws IOException {
+            if (pos == buf.length) flush();
+            buf[pos++] = (byte) c;
+            return this;
+        }
+
+        /**
+         * Escreve um trecho ASCII sem escape (nomes de campos, pontuação).
+         */
+        JsonWriter raw(String ascii) throws IOException {
+            for (int k = 0; k < ascii.length(); k++) raw(ascii.charAt(k));
+            return this;
+        }
+
+        /**
+         * Escreve um trecho de JSON já codificado em UTF-8.
+         */
+        JsonWriter bytes(byte[] b) throws IOException {
+            if (pos + b.length > buf.length) flush();
+            if (b.length > buf.length) out.write(b);
+            else {
+                System.arraycopy(b, 0, buf, pos, b.length);
+                pos += b.length;
+            }
+            return this;
+        }
+
+        /**
+         * Escreve um número inteiro sem criar Strings.
+         */
+        JsonWriter num(long v) throws IOException {
+            if (v == Long.MIN_VALUE) return raw(Long.toString(v));
+            if (v < 0) {
+                raw('-');
+                v = -v;
+            }
+            if (pos + 20 > buf.length) flush();
+            int ini = pos;
+            do {
+                buf[pos++] = (byte) ('0' + v % 10);
+                v /= 10;
+            } while (v > 0);
+            // Os dígitos saíram do menos para o mais significativo: inverte no lugar
+            for (int a = ini, b = pos - 1; a < b; a++, b--) {
+                byte t = buf[a];
+                buf[a] = buf[b];
+                buf[b] = t;
+            }
+            return this;
+        }
+
+        /**
+         * Escreve uma string JSON entre aspas, escapando e codificando em UTF-8 caractere a caractere.
+         * Segue jsonEsc(): '\r' é descartado e demais caracteres de controle viram \\uXXXX.
+         */
+        JsonWriter str(String s) throws IOException {
+            raw('"');
+            if (s != null) {
+                for (int k = 0; k < s.length(); k++) {
+                    char c = s.charAt(k);
+                    if (pos + 6 > buf.length) flush(); // Espaço para o maior escape ou 4 bytes de UTF-8
+                    if (c == '"' || c == '\\') {
+                        buf[pos++] = '\\';
+                        buf[pos++] = (byte) c;
+                    } else if (c == '\n') {
+                        buf[pos++] = '\\';
+                        buf[pos++] = 'n';
+                    } else if (c == '\r') {
+                        // Descartado, como em jsonEsc()
+                    } else if (c < 0x20) {
+                        buf[pos++] = '\\';
+                        buf[pos++] = 'u';
+                        buf[pos++] = '0';
+                        buf[pos++] = '0';
+                        buf[pos++] = (byte) HEX[c >> 4];
+                        buf[pos++] = (byte) HEX[c & 0xF];
+                    } else if (c < 0x80) {
+                        buf[pos++] = (byte) c;
+                    } else if (c < 0x800) {
+                        buf[pos++] = (byte) (0xC0 | c >> 6);
+                        buf[pos++] = (byte) (0x80 | c & 0x3F);
+                    } else if (Character.isHighSurrogate(c) && k + 1 < s.length()
+                            && Character.isLowSurrogate(s.charAt(k + 1))) {
+                        int cp = Character.toCodePoint(c, s.charAt(++k));
+                        buf[pos++] = (byte) (0xF0 | cp >> 18);
+                        buf[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                        buf[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                        buf[pos++] = (byte) (0x80 | cp & 0x3F);
+                    } else if (Character.isSurrogate(c)) {
+                        buf[pos++] = '?'; // Surrogate isolado: mesmo comportamento de String.getBytes(UTF_8)
+                    } else {
+                        buf[pos++] = (byte) (0xE0 | c >> 12);
+                        buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                        buf[pos++] = (byte) (0x80 | c & 0x3F);
+                    }
+                }
+            }
+            return raw('"');
+        }
+
+        /**
+         * Escreve uma string JSON a partir de texto já codificado (Latin-1 ou UTF-8), com os mesmos escapes
+         * de str(String). Bytes UTF-8 acima de 0x7F são copiados como estão; Latin-1 vira UTF-8 de 2 bytes.
+         */
+        JsonWriter str(byte[] b, int ini, int len, boolean latin1) throws IOException {
+            raw('"');
+            for (int k = ini, fim = ini + len; k < fim; k++) {
+                int c = b[k] & 0xFF;
+                if (pos + 6 > buf.length) flush();
+                if (c == '"' || c == '\\') {
+                    buf[pos++] = '\\';
+                    buf[pos++] = (byte) c;
+                } else if (c == '\n') {
+                    buf[pos++] = '\\';
+                    buf[pos++] = 'n';
+                } else if (c == '\r') {
+                    // Descartado, como em jsonEsc()
+                } else if (c < 0x20) {
+                    buf[pos++] = '\\';
+                    buf[pos++] = 'u';
+                    buf[pos++] = '0';
+                    buf[pos++] = '0';
+                    buf[pos++] = (byte) HEX[c >> 4];
+                    buf[pos++] = (byte) HEX[c & 0xF];
+                } else if (c < 0x80 || !latin1) {
+                    buf[pos++] = (byte) c;
+                } else {
+                    buf[pos++] = (byte) (0xC0 | c >> 6);
+                    buf[pos++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            return raw('"');
+        }
+
+        /**
+         * Escreve uma string JSON com os 8 dígitos hexadecimais minúsculos de um valor de 32 bits.
+         */
+        JsonWriter hex8(long v) throws IOException {
+            if (pos + 10 > buf.length) flush();
+            buf[pos++] = '"';
+            for (int d = 28; d >= 0; d -= 4) buf[pos++] = (byte) HEX[(int) (v >>> d) & 0xF];
+            buf[pos++] = '"';
+            return this;
+        }
+
+        /**
+         * Descarrega o buffer no OutputStream.
+         */
+        void flush() throws IOException {
+            if (pos > 0) out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Carga paralela do snapshot CSV. O arquivo é mapeado em memória e dividido em blocos de tamanho
+     * igual; uma primeira passada paralela conta as aspas de cada bloco, e a paridade acumulada diz se o
+     * bloco começa dentro de um campo entre aspas (esc() pode gravar quebras de linha dentro delas).
+     * Com isso cada bloco avança até o primeiro fim de registro fora de aspas e converte, em paralelo,
+     * os registros que começam nele, direto dos bytes: sem String por linha, sem split e sem exceções
+     * nos números. A inserção no armazenamento continua sequencial, na ordem do arquivo.
+     */
+    static final class CargaCsv {
+        static final int BLOCO_MIN = 1 << 20; // Arquivos menores são lidos em um único bloco
+        static final int BLOCO_MAX = 16 << 20; // Mantém o trabalho dividido em muitos blocos em arquivos grandes
+
+        /**
+         * Registros convertidos de um bloco, em colunas.
+         */
+        static final class Bloco {
+            String[] ids = new String[256], titulos = new String[256], descrs = new String[256];
+            int[] status = new int[256];
+            long[] criados = new long[256], desdes = new long[256];
+            int total = 0;
+
+            void adicionar(String id, String titulo, String descr, int st, long criado, long desde) {
+                if (total == ids.length) {
+                    int c = total * 2;
+                    ids = Arrays.copyOf(ids, c);
+                    titulos = Arrays.copyOf(titulos, c);
+                    descrs = Arrays.copyOf(descrs, c);
+                    status = Arrays.copyOf(status, c);
+                    criados = Arrays.copyOf(criados, c);
+                    desdes = Arrays.copyOf(desdes, c);
+                }
+                ids[total] = id;
+                titulos[total] = titulo;
+                descrs[total] = descr;
+                status[total] = st;
+                criados[total] = criado;
+                desdes[total++] = desde;
+            }
+        }
+
+        private final ByteBuffer m; // Arquivo mapeado (somente leituras absolutas: seguro entre threads)
+        private final int tamanho;
+        private final int[] inicio; // Início bruto de cada bloco; inicio[blocos] = tamanho
+
+        private CargaCsv(ByteBuffer m, int blocos) {
+            this.m = m;
+            this.tamanho = m.capacity();
+            this.inicio = new int[blocos + 1];
+            for (int k = 0; k <= blocos; k++) inicio[k] = (int) ((long) tamanho * k / blocos);
+        }
+
+        /**
+         * Lê o CSV e insere as tarefas em tarefas, ignorando IDs repetidos (vale a primeira ocorrência).
+         * Arquivos acima de 2 GB, que não cabem em um único mapeamento, usam a leitura sequencial.
+         * @param p O caminho do CSV.
+         * @param tarefas O armazenamento de destino.
+         * @return A quantidade de blocos convertidos em paralelo (0 se a leitura foi sequencial).
+         * @throws IOException Em caso de erro de leitura.
+         */
+        static int carregar(Path p, TaskStore tarefas) throws IOException {
+            ByteBuffer m;
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+                long n = ch.size();
+                if (n == 0) return 0;
+                if (n > Integer.MAX_VALUE) {
+                    carregarCsvSequencial(p, tarefas);
+                    return 0;
+                }
+                m = ch.map(FileChannel.MapMode.READ_ONLY, 0, n); // O mapeamento continua válido após fechar o canal
+            }
+            int paralelo = ForkJoinPool.getCommonPoolParallelism() + 1;
+            int blocos = (int) Math.max(1, Math.min(Math.max(paralelo * 4L, m.capacity() / BLOCO_MAX),
+                    m.capacity() / BLOCO_MIN));
+            CargaCsv c = new CargaCsv(m, blocos);
+
+            // 1) Aspas por bloco, em paralelo; a paridade acumulada diz quem começa dentro de aspas
+            int[] aspas = IntStream.range(0, blocos).parallel().map(c::contarAspas).toArray();
+            boolean[] dentro = new boolean[blocos];
+            for (int k = 1; k < blocos; k++) dentro[k] = dentro[k - 1] ^ (aspas[k - 1] & 1) == 1;
+
+            // 2) Conversão dos registros de cada bloco, em paralelo e na ordem do arquivo
+            Bloco[] r = IntStream.range(0, blocos).parallel()
+                    .mapToObj(k -> c.converter(k, dentro[k])).toArray(Bloco[]::new);
+
+            // 3) Inserção sequencial (a carga nunca descarta dados já gravados, mesmo acima dos limites)
+            for (Bloco b : r) {
+                for (int i = 0; i < b.total; i++) {
+                    if (tarefas.buscar(b.ids[i]) >= 0) continue; // Ignora IDs duplicados (mantém a primeira ocorrência)
+                    tarefas.inserir(b.ids[i], b.titulos[i], b.descrs[i], b.status[i], b.criados[i], b.desdes[i]);
+                }
+            }
+            return blocos;
+        }
+
+        private int contarAspas(int k) {
+            int q = 0;
+            for (int i = inicio[k], fim = inicio[k + 1]; i < fim; i++) {
+                if (m.get(i) == '"') q++;
+            }
+            return q;
+        }
+
+        /**
+         * Converte os registros que começam no bloco k. O primeiro registro do bloco é o que vem depois
+         * da primeira quebra de linha fora de aspas; o último pode terminar depois do fim bruto do bloco.
+         */
+        private Bloco converter(int k, boolean dentroDeAspas) {
+            Bloco b = new Bloco();
+            int i = inicio[k], fim = inicio[k + 1];
+            if (k > 0) {
+                // Um registro que começa exatamente em inicio[k] pertence ao bloco anterior (ver o laço abaixo)
+                boolean q = dentroDeAspas;
+                while (i < tamanho) {
+                    byte c = m.get(i++);
+                    if (c == '"') q = !q;
+                    else if (c == '\n' && !q) break;
+                }
+            }
+            byte[] cur = new byte[256]; // Bytes do campo atual, sem as aspas de escape
+            String[] campos = new String[3];
+            while (i < tamanho && i <= fim) {
+                int n = 0, len = 0, st = 0;
+                long criado = 0, desde = 0;
+                boolean inQ = false, temCriado = false, temDesde = false, fimRegistro = false;
+                while (!fimRegistro) {
+                    byte c = i < tamanho ? m.get(i) : (byte) '\n';
+                    i++;
+                    if (inQ) {
+                        if (c == '"') {
+                            if (i < tamanho && m.get(i) == '"') {
+                                c = '"';
+                                i++;
+                            } else {
+                                inQ = false;
+                                continue;
+                            }
+                        }
+                    } else if (c == '"') {
+                        inQ = true;
+                        continue;
+                    } else if (c == '\r') {
+                        continue; // Como em lerRegistro(): \r fora de aspas é descartado
+                    } else if (c == ';' || c == '\n') {
+                        // Fim de campo: os três primeiros viram texto, os seguintes números
+                        if (n < 3) campos[n] = new String(cur, 0, len, StandardCharsets.UTF_8);
+                        else if (n == 3) st = clampStatus((int) numero(cur, len, 0));
+                        else if (n == 4) {
+                            criado = numero(cur, len, Long.MIN_VALUE);
+                            temCriado = criado != Long.MIN_VALUE;
+                        } else if (n == 5) {
+                            desde = numero(cur, len, Long.MIN_VALUE);
+                            temDesde = desde != Long.MIN_VALUE;
+                        }
+                        n++;
+                        len = 0;
+                        fimRegistro = c == '\n';
+                        continue;
+                    }
+                    if (len == cur.length) cur = Arrays.copyOf(cur, len * 2);
+                    cur[len++] = c;
+                }
+                if (n < 5 || "id".equals(campos[0])) continue; // Registro incompleto, linha em branco ou cabeçalho
+                if (!temCriado) criado = System.currentTimeMillis();
+                // Snapshots sem a coluna statusDesde contam o status a partir da criação
+                b.adicionar(campos[0], campos[1], campos[2], st, criado, temDesde ? desde : criado);
+            }
+            return b;
+        }
+
+        /**
+         * Converte dígitos ASCII (com sinal e espaços opcionais) em número, sem exceções.
+         * @return O número, ou def se o texto não for um inteiro válido de 64 bits.
+         */
+        static long numero(byte[] b, int len, long def) {
+            int i = 0;
+            while (i < len && b[i] == ' ') i++;
+            while (len > i && b[len - 1] == ' ') len--;
+            boolean neg = i < len && b[i] == '-';
+            if (i < len && (b[i] == '-' || b[i] == '+')) i++;
+            if (i == len) return def;
+            long v = 0;
+            for (; i < len; i++) {
+                int d = b[i] - '0';
+                if (d < 0 || d > 9) return def;
+                if (v < (Long.MIN_VALUE + d) / 10) return def; // Estouro (acumula em negativo para caber MIN_VALUE)
+                v = v * 10 - d;
+            }
+            if (!neg && v == Long.MIN_VALUE) return def;
+            return neg ? v : -v;
+        }
+    }
+
+    /**
+     * Snapshot em formato binário (kanban.snapshot=bin), alternativa ao CSV. Layout, em big-endian:
+     * <pre>
+     *   cabeçalho (40 bytes): "KANB", versão, total, 0, bytes da seção de textos, CRC32 do corpo, 0
+     *   criados:  long × total
+     *   desdes:   long × total, entrada no status atual (desde a versão 2; a versão 1 ainda é lida)
+     *   status:   byte × total (completado com zeros até múltiplo de 8)
+     *   textos:   por tarefa, id, título e descrição como int (tamanho) + bytes; o bit 31 do tamanho
+     *             indica Latin-1 (quando todos os caracteres cabem nele), senão os bytes são UTF-8
+     *   inícios:  long × (total + 1), posição dos textos de cada tarefa dentro da seção de textos
+     * </pre>
+     * As colunas de largura fixa podem ser lidas sem tocar nos textos, e o índice de inícios permite
+     * dividir os textos em blocos convertidos em paralelo, direto do arquivo mapeado em memória.
+     * O CRC32 cobre tudo depois do cabeçalho; um arquivo com CRC errado é recusado. Textos em Latin-1
+     * (o caso comum em português) viram Strings compactas por cópia, sem decodificação.
+     */
+    static final class SnapshotBinario {
+        static final int MAGICO = 0x4B414E42; // "KANB"
+        static final int VERSAO = 2;
+        static final int CABECALHO = 40;
+        static final int BUFFER = 1 << 20; // Buffer direto de escrita
+        static final long BLOCO_TEXTOS = 16 << 20; // Textos convertidos por tarefa paralela
+        static final long JANELA = 1L << 30; // Maior trecho mapeado de uma vez
+        static final int LATIN1 = 1 << 31; // Marca, no prefixo de tamanho, um texto gravado em Latin-1
+
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+        private final CRC32 crc = new CRC32();
+
+        private SnapshotBinario(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        /**
+         * Grava o snapshot em um arquivo temporário e o move sobre p ao final (como gravarSnapshot()).
+         * @param p O caminho do snapshot.
+         * @param s A cópia das tarefas.
+         * @throws IOException Em caso de erro de escrita.
+         */
+        static void gravar(Path p, Snapshot s) throws IOException {
+            if (p.getParent() != null) Files.createDirectories(p.getParent());
+            Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+            int n = s.total();
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotBinario w = new SnapshotBinario(ch);
+                ch.position(CABECALHO);
+                for (int i = 0; i < n; i++) w.espaco(8).putLong(s.criados()[i]);
+                for (int i = 0; i < n; i++) w.espaco(8).putLong(s.desdes()[i]);
+                for (int i = 0; i < n; i++) w.espaco(1).put((byte) s.status()[i]);
+                for (int i = n; (i & 7) != 0; i++) w.espaco(1).put((byte) 0);
+                long[] inicios = new long[n + 1];
+                long pos = 0;
+                for (int i = 0; i < n; i++) {
+                    inicios[i] = pos;
+                    pos += w.texto(s.ids()[i]) + w.texto(s.titulos()[i]) + w.texto(s.descrs()[i]);
+                }
+                inicios[n] = pos;
+                for (long v : inicios) w.espaco(8).putLong(v);
+                w.descarregar();
+
+                ByteBuffer cab = ByteBuffer.allocate(CABECALHO);
+                cab.putInt(MAGICO).putInt(VERSAO).putInt(n).putInt(0).putLong(pos).putLong(w.crc.getValue()).putLong(0);
+                cab.flip();
+                while (cab.hasRemaining()) ch.write(cab, cab.position());
+                ch.force(true); // Garante que o snapshot está em disco antes de substituir o anterior
+            }
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Escreve uma string com prefixo de tamanho.
+         * @return Quantidade de bytes escritos.
+         */
+        private int texto(String s) throws IOException {
+            if (s == null) s = "";
+            boolean latin1 = true;
+            for (int k = 0; k < s.length() && latin1; k++) latin1 = s.charAt(k) <= 0xFF;
+            byte[] b = s.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            espaco(4).putInt(latin1 ? b.length | LATIN1 : b.length);
+            if (b.length > buf.remaining()) {
+                descarregar();
+                if (b.length > buf.capacity()) {
+                    crc.update(b);
+                    ByteBuffer bb = ByteBuffer.wrap(b);
+                    while (bb.hasRemaining()) ch.write(bb);
+                    return 4 + b.length;
+                }
+            }
+            buf.put(b);
+            return 4 + b.length;
+        }
+
+        private ByteBuffer espaco(int n) throws IOException {
+            if (buf.remaining() < n) descarregar();
+            return buf;
+        }
+
+        private void descarregar() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        /**
+         * Lê o snapshot e insere as tarefas em tarefas, ignorando IDs repetidos.
+         * @param p O caminho do snapshot.
+         * @param tarefas O armazenamento de destino.
+         * @return A quantidade de blocos de textos convertidos em paralelo.
+         * @throws IOException Se o arquivo não é um snapshot válido ou não pôde ser lido.
+         */
+        static int carregar(Path p, TaskStore tarefas) throws IOException {
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+                long tamanho = ch.size();
+                if (tamanho < CABECALHO) throw new IOException("snapshot binário truncado: " + p);
+                ByteBuffer cab = ByteBuffer.allocate(CABECALHO);
+                while (cab.hasRemaining() && ch.read(cab, cab.position()) >= 0) { }
+                cab.flip();
+                if (cab.getInt() != MAGICO) throw new IOException("não é um snapshot binário: " + p);
+                int versao = cab.getInt();
+                if (versao != 1 && versao != VERSAO) throw new IOException("versão de snapshot não suportada: " + versao);
+                int n = cab.getInt();
+                cab.getInt();
+                long bytesTextos = cab.getLong(), esperado = cab.getLong();
+                int largura = versao == 1 ? 8 : 16; // Bytes de colunas long por tarefa
+                long colunas = (long) largura * n + ((n + 7) & ~7L);
+                if (n < 0 || bytesTextos < 0 || CABECALHO + colunas + bytesTextos + 8L * (n + 1) != tamanho)
+                    throw new IOException("snapshot binário truncado: " + p);
+
+                // CRC do corpo, em janelas mapeadas
+                CRC32 c = new CRC32();
+                for (long pos = CABECALHO; pos < tamanho; pos += JANELA) {
+                    c.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(JANELA, tamanho - pos)));
+                }
+                if (c.getValue() != esperado) throw new IOException("CRC do snapshot não confere: " + p);
+
+                // Colunas de largura fixa e índice de inícios
+                long baseTextos = CABECALHO + colunas;
+                ByteBuffer col = ch.map(FileChannel.MapMode.READ_ONLY, CABECALHO, colunas);
+                ByteBuffer idx = ch.map(FileChannel.MapMode.READ_ONLY, baseTextos + bytesTextos, 8L * (n + 1));
+                long[] inicios = new long[n + 1];
+                idx.asLongBuffer().get(inicios);
+                long[] criados = new long[n];
+                col.asLongBuffer().get(criados);
+                long[] desdes;
+                if (versao == 1) desdes = criados; // Sem a coluna, o status conta desde a criação
+                else {
+                    desdes = new long[n];
+                    col.asLongBuffer().get(n, desdes);
+                }
+                byte[] status = new byte[n];
+                col.get(largura * n, status);
+
+                // Blocos de tarefas com até BLOCO_TEXTOS bytes de texto, convertidos em paralelo
+                List<Integer> cortes = new ArrayList<>();
+                cortes.add(0);
+                for (int i = 1; i < n; i++) {
+                    if (inicios[i] - inicios[cortes.get(cortes.size() - 1)] >= BLOCO_TEXTOS) cortes.add(i);
+                }
+                cortes.add(n);
+                int blocos = cortes.size() - 1;
+                String[][][] textos = IntStream.range(0, blocos).parallel().mapToObj(k -> {
+                    int de = cortes.get(k), ate = cortes.get(k + 1);
+                    try {
+                        ByteBuffer t = ch.map(FileChannel.MapMode.READ_ONLY, baseTextos + inicios[de],
+                                inicios[ate] - inicios[de]);
+                        String[][] r = new String[3][ate - de];
+                        byte[] aux = new byte[256];
+                        for (int i = 0; i < ate - de; i++) {
+                            for (int f = 0; f < 3; f++) {
+                                int len = t.getInt();
+                                boolean latin1 = (len & LATIN1) != 0;
+                                len &= ~LATIN1;
+                                if (len > aux.length) aux = new byte[Math.max(len, aux.length * 2)];
+                                t.get(aux, 0, len);
+                                r[f][i] = new String(aux, 0, len, latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+                            }
+                        }
+                        return r;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).toArray(String[][][]::new);
+
+                for (int k = 0; k < blocos; k++) {
+                    String[][] r = textos[k];
+                    for (int i = 0; i < r[0].length; i++) {
+                        if (tarefas.buscar(r[0][i]) >= 0) continue; // Ignora IDs duplicados (mantém a primeira ocorrência)
+                        int j = cortes.get(k) + i;
+                        tarefas.inserir(r[0][i], r[1][i], r[2][i], clampStatus(status[j]), criados[j], desdes[j]);
+                    }
+                }
+                return blocos;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Conteúdo HTML da página principal da aplicação Kanban.
+     * Inclui estilos CSS e lógica JavaScript para interagir com a API.
+     */
+    static final String INDEX_HTML = """
+<!doctype html>
+<html lang="pt-BR">
+<head>
+<meta charset="utf-8"/>
+<meta name="viewport" content="width=device-width,initial-scale=1"/>
+<title>Kanban Local (sem framework)</title>
+<style>
+  :root{--bg:#f6f7fb;--card:#fff;--muted:#666;}
+  *{box-sizing:border-box} body{margin:0;font:16px system-ui,Segoe UI,Roboto,Arial;background:var(--bg)}
+  header{background:#111;color:#fff;padding:12px 16px}
+  .wrap{max-width:1100px;margin:0 auto;padding:16px}
+  form{display:flex;gap:8px;flex-wrap:wrap;margin:12px 0}
+  input,textarea,button,select{border:1px solid #ddd;border-radius:10px;padding:10px;font:inherit}
+  textarea{min-width:260px;min-height:40px}
+  button{cursor:pointer}
+  .board{display:grid;grid-template-columns:repeat(3,1fr);gap:16px}
+  .col{background:var(--card);border-radius:14px;box-shadow:0 6px 16px rgba(0,0,0,.06);padding:12px}
+  .col h2{margin:6px 4px 10px}
+  .task{border:1px solid #eee;border-radius:12px;background:#fafafa;margin:8px 0;padding:10px}
+  .row{display:flex;gap:8px;flex-wrap:wrap;align-items:center}
+  small{color:var(--muted)}
+  .pill{font-size:.75rem;padding:2px 8px;border-radius:999px;background:#eef;border:1px solid #dde}
+</style>
+</head>
+<body>
+<header><b>Kanban Local</b> — Gestão de Atividades</header>
+<div class="wrap">
+
+  <h3>Nova tarefa</h3>
+  <form id="f">
+    <input id="t" placeholder="Título" required>
+    <textarea id="d" placeholder="Descrição (opcional)"></textarea>
+    <button>Adicionar</button>
+  </form>
+
+  <div class="board">
+    <div class="col"><h2>To-Do</h2><div id="todo"></div></div>
+    <div class="col"><h2>Doing</h2><div id="doing"></div></div>
+    <div class="col"><h2>Done</h2><div id="done"></div></div>
+  </div>
+
+</div>
+
+<script>
+// ?quadro=nome abre outro quadro (/api/boards/nome/tasks); sem o parâmetro, o quadro padrão
+const QUADRO = new URLSearchParams(location.search).get('quadro');
+const API = QUADRO ? "/api/boards/" + encodeURIComponent(QUADRO) + "/tasks" : "/api/tasks";
+const tarefas = new Map(); // id -> tarefa, em ordem de criação
+let versao = null;         // ID do último evento refletido em tarefas ("época-versão", vem do ETag)
+let feed = null;           // EventSource do feed de mudanças
+let pendentes = null;      // Eventos recebidos enquanto a lista é baixada
+
+async function listar(){
+  pendentes = [];
+  const r = await fetch(API);
+  const data = await r.json();
+  tarefas.clear();
+  data.forEach(t=>tarefas.set(t.id, t));
+  const etag = r.headers.get('ETag');
+  versao = etag ? etag.replace(/"/g, '').replace(/-gz$/, '') : null; // Sem o sufixo do corpo em gzip
+  const fila = pendentes; pendentes = null;
+  fila.forEach(aplicar); // Só os posteriores à lista baixada têm efeito
+  render();
+  if(!feed) assinar();
+}
+
+function seq(id){ return Number(id.slice(id.lastIndexOf('-') + 1)); }
+
+// Aplica um evento do feed sobre o mapa local, em vez de baixar o quadro de novo
+function aplicar(ev){
+  if(versao && seq(ev.lastEventId) <= seq(versao)) return; // Já refletido
+  const t = JSON.parse(ev.data);
+  if(ev.type === 'excluida') tarefas.delete(t.id); else tarefas.set(t.id, t);
+  versao = ev.lastEventId;
+}
+
+function assinar(){
+  if(!window.EventSource) return; // Sem SSE: cada ação recarrega a lista
+  feed = new EventSource(API + '/events' + (versao ? '?desde=' + encodeURIComponent(versao) : ''));
+  const tratar = ev => { if(pendentes) pendentes.push(ev); else { aplicar(ev); render(); } };
+  ['criada','status','excluida'].forEach(tipo=>feed.addEventListener(tipo, tratar));
+  feed.addEventListener('reset', ()=>listar()); // Eventos perdidos: recomeça da lista completa
+}
+
+function el(html){
+  const t = document.createElement("template");
+  t.innerHTML = html.trim();
+  return t.content.firstChild;
+}
+
+// CORRIGIDO: função sem erro de sintaxe
+function escapeHtml(s){
+  return s.replace(/[&<>\""]/g, c => ({
+    '&':'&amp;',
+    '<':'&lt;',
+    '>':'&gt;',
+    '"':'&quot;',
+    "'":'&#039;'
+  }[c]));
+}
+
+function card(t){
+  const div = el(`<div class="task">
+      <strong>${escapeHtml(t.titulo)}</strong>
+      <div class="row">
+        <span class="pill">${['TODO','DOING','DONE'][t.status] || t.status}</span>
+        <small>criado: ${new Date(t.criadoEm).toLocaleString()}</small>
+      </div>
+      <p>${escapeHtml(t.descricao||'')}</p>
+      <div class="row">
+        ${t.status!==0?'<button data-prev>◀</button>':''}
+        ${t.status!==2?'<button data-next>▶</button>':''}
+        <button data-del>Excluir</button>
+      </div>
+  </div>`);
+
+  if(div.querySelector('[data-prev]')){
+    div.querySelector('[data-prev]').onclick=()=>mover(t.id, t.status===2?1:0);
+  }
+  if(div.querySelector('[data-next]')){
+    div.querySelector('[data-next]').onclick=()=>mover(t.id, t.status===0?1:2);
+  }
+  div.querySelector('[data-del]').onclick=()=>excluir(t.id);
+  return div;
+}
+
+let desenhoAgendado = false;
+function render(){
+  // Rajadas de eventos resultam em um único desenho por quadro
+  if(desenhoAgendado) return;
+  desenhoAgendado = true;
+  requestAnimationFrame(()=>{ desenhoAgendado = false; desenhar(); });
+}
+
+function desenhar(){
+  // Uma única passada: cada cartão vai para o fragmento da sua coluna
+  const cols = ['todo','doing','done'].map(()=>document.createDocumentFragment());
+  tarefas.forEach(x=>{ if(cols[x.status]) cols[x.status].appendChild(card(x)); });
+  ['todo','doing','done'].forEach((id,i)=>document.getElementById(id).replaceChildren(cols[i]));
+}
+
+document.getElementById('f').onsubmit=async (e)=>{
+  e.preventDefault();
+  const titulo = document.getElementById('t').value.trim();
+  const descricao = document.getElementById('d').value.trim();
+  if(!titulo) return;
+  await fetch(API,{method:'POST',headers:{'Content-Type':'application/json'},body:JSON.stringify({titulo,descricao})});
+  e.target.reset(); if(!feed) listar();
+};
+
+async function mover(id,status){
+  await fetch(`${API}/${id}/status`,{method:'PATCH',headers:{'Content-Type':'application/json'},body:JSON.stringify({status})});
+  if(!feed) listar();
+}
+async function excluir(id){
+  await fetch(`${API}/${id}`,{method:'DELETE'}); if(!feed) listar();
+}
+
+listar();
+</script>
+</body>
+</html>
+""";
+
+    /**
+     * Um quadro Kanban: armazenamento, cache da listagem, feed de mudanças e persistência próprios.
+     * O quadro padrão usa os arquivos data_tasks.* do diretório de trabalho e atende /api/tasks; os demais
+     * ficam em kanban.quadrosDir/nome/ e atendem /api/boards/nome/tasks. Cada quadro tem a própria trava e
+     * o próprio log, então escritas em quadros diferentes nunca disputam a mesma trava nem o mesmo fsync.
+     * <p>Os quadros são carregados no primeiro acesso e, exceto o padrão, podem ser descarregados pelo
+     * {@link Quadros} quando a memória dos quadros carregados passa do orçamento.
+     */
+    static final class Quadro {
+        final String nome;
+        final Path csv, bin, log; // Snapshot CSV, snapshot binário e log de mutações
+        final TaskStore tarefas = new TaskStore(MAX_TAREFAS, MAX_MEMORIA, DEDUP_TEXTOS);
+        final ListCache cacheLista = new ListCache(this); // Listagem serializada da versão atual
+        final ChangeFeed feed = new ChangeFeed(FEED_EVENTOS); // Eventos de mudança (SSE)
+
+        // Estado da persistência incremental
+        WriteAheadLog wal; // Log de mutações aberto para escrita (null = somente memória ou seguidor)
+        Seguidor seguidor; // Acompanhamento do log do primário (somente no modo seguidor)
+        long geracaoLog = 0; // Última geração de log rotacionada (protegida pela trava de escrita)
+        volatile boolean compactando = false; // Indica se há uma compactação em andamento
+
+        // Ciclo de vida no registro de quadros
+        private final boolean permanente; // O quadro padrão nunca é descarregado
+        private final AtomicInteger emUso = new AtomicInteger(); // Requisições em andamento (-1 = descarregado)
+        volatile long ultimoAcesso; // System.nanoTime() do último fixar(), para o LRU
+        private volatile boolean aberto; // Carregado e com o log aberto (alterado sob o monitor do quadro)
+
+        /**
+         * @param nome O nome do quadro.
+         * @param dir O diretório dos arquivos do quadro.
+         * @param permanente true para o quadro padrão, que nunca é descarregado.
+         */
+        Quadro(String nome, Path dir, boolean permanente) {
+            this.nome = nome;
+            this.csv = dir.resolve(CSV);
+            this.bin = dir.resolve(BIN);
+            this.log = dir.resolve(LOG);
+            this.permanente = permanente;
+        }
+
+        /**
+         * Carrega o quadro (snapshot e logs), inicia a indexação da busca e abre o log para as próximas
+         * mutações. Chamadas seguintes não fazem nada; chamadas concorrentes esperam a primeira terminar.
+         * @throws IOException Em caso de erro ao abrir o log.
+         */
+        synchronized void abrir() throws IOException {
+            if (aberto) return;
+            if (SEGUIDOR) {
+                // Réplica: carrega sem consolidar nem apagar nada e acompanha o log que o primário grava
+                seguidor = new Seguidor(this);
+                seguidor.recarregar();
+                seguidor.iniciar();
+                aberto = true;
+                return;
+            }
+            if (log.getParent() != null) Files.createDirectories(log.getParent());
+            carregar(); // Carrega as tarefas do snapshot e reaplica o log de mutações
+            indexarBusca(); // O índice de busca das tarefas carregadas é montado em segundo plano
+            // Abre o log para as próximas mutações (no modo sync, sem atraso: o lote sai assim que possível)
+            wal = WriteAheadLog.abrir(log, ASSINCRONO ? FLUSH_MS : 0, FLUSH_MUTACOES);
+            feed.iniciar(tarefas.versao()); // Eventos só podem ser retomados a partir do estado carregado
+            aberto = true;
+        }
+
+        /**
+         * Marca o quadro como em uso por uma requisição, impedindo que seja descarregado até liberar().
+         * @return false se o quadro já foi descarregado (o chamador deve obter outra instância).
+         */
+        boolean fixar() {
+            ultimoAcesso = System.nanoTime();
+            if (permanente) return true;
+            for (int n = emUso.get(); n >= 0; n = emUso.get()) {
+                if (emUso.compareAndSet(n, n + 1)) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Desfaz um fixar().
+         */
+        void liberar() {
+            if (!permanente) emUso.decrementAndGet();
+        }
+
+        /**
+         * Descarrega o quadro se ninguém o estiver usando: sem requisições em andamento, sem assinantes de
+         * eventos e sem compactação em andamento. O log pendente é gravado; o estado fica todo em disco.
+         * @return true se o quadro foi descarregado.
+         */
+        boolean descarregar() {
+            if (permanente || !emUso.compareAndSet(0, -1)) return false;
+            // Com emUso em -1 nenhuma requisição entra, então a compactação não pode recomeçar. Um quadro com o
+            // log em falha fica carregado: recarregado, voltaria a aceitar mutações sobre um log incompleto
+            if (compactando || feed.assinantes() > 0 || (wal != null && wal.falha() != null)) {
+                emUso.set(0);
+                return false;
+            }
+            synchronized (this) {
+                try {
+                    if (wal != null) wal.fechar();
+                } catch (IOException e) {
+                    System.out.println("Falha ao gravar o log do quadro " + nome + ": " + e.getMessage());
+                }
+                if (seguidor != null) seguidor.parar();
+                feed.fechar();
+                aberto = false;
+            }
+            return true;
+        }
+
+        /**
+         * @return true se o quadro está carregado (e ainda não foi descarregado). O padrão sempre está.
+         */
+        boolean carregado() {
+            return permanente || aberto;
+        }
+
+        /**
+         * @return O caminho do log rotacionado da geração informada ("data_tasks.log.N").
+         */
+        Path logGeracao(long g) {
+            return log.resolveSibling(log.getFileName() + "." + g);
+        }
+
+        /**
+         * Carrega as tarefas do snapshot CSV para a memória e reaplica o log de mutações.
+         * Os logs antigos (rotacionados por uma compactação que não terminou) são reaplicados
+         * primeiro, em ordem de geração, e depois o log ativo. Se algum log existir, o estado
+         * recuperado é gravado como um novo snapshot e os logs são descartados.
+         * Se nenhum arquivo existir, a lista de tarefas permanece vazia.
+         */
+        void carregar() {
+            long t0 = System.nanoTime();
+            tarefas.limpar(); // Reseta as tarefas em memória
+            Path p = snapshotParaLer();
+            boolean migrar = !p.equals(SNAPSHOT_BINARIO ? bin : csv);
+            long bytesSnapshot = 0;
+            int blocos = 0;
+            if (Files.exists(p)) {
+                try {
+                    bytesSnapshot = Files.size(p);
+                    blocos = lerSnapshot(p); // Arquivo mapeado em memória, convertido em paralelo
+                } catch (IOException e) {
+                    // Um snapshot binário com CRC errado não pode virar um quadro vazio que depois o sobrescreve
+                    if (p.toString().endsWith(".bin")) throw new UncheckedIOException("Snapshot inválido", e);
+                    System.out.println("Falha ao ler CSV: " + e.getMessage()); // Imprime erro em caso de falha na leitura
+                }
+            }
+            long t1 = System.nanoTime();
+            int doSnapshot = tarefas.tamanho();
+
+            // Reaplica os logs antigos e o log ativo sobre o snapshot
+            List<Path> logs = new ArrayList<>();
+            for (long g : geracoesLog()) {
+                logs.add(logGeracao(g));
+                geracaoLog = Math.max(geracaoLog, g); // Novas rotações não podem sobrescrever gerações existentes
+            }
+            if (Files.exists(log)) logs.add(log);
+            for (Path log : logs) reproduzirLog(log);
+            long t2 = System.nanoTime();
+            System.out.printf("Carga do quadro %s: %d tarefas de %s (%.1f MB, %s) em %d ms; %d logs reaplicados em %d ms%n",
+                    nome, doSnapshot, p.getFileName(), bytesSnapshot / 1048576.0,
+                    blocos > 0 ? blocos + " blocos em paralelo" : bytesSnapshot > 0 ? "leitura sequencial" : "sem snapshot",
+                    (t1 - t0) / 1_000_000, logs.size(), (t2 - t1) / 1_000_000);
+            Metricas.CARGA_QUADRO.registrar(t2 - t0);
+            if (permanente) {
+                Metricas.cargaNs = t2 - t0;
+                Metricas.cargaTarefas = doSnapshot;
+                Metricas.cargaLogs = logs.size();
+            }
+            if (logs.isEmpty() && !migrar) return;
+            tarefas.compactar(tarefas.congelar()); // Elimina as lápides deixadas pelas exclusões do log
+
+            // Consolida o estado recuperado em um novo snapshot e descarta os logs aplicados
+            avisarSeAcimaDosLimites();
+            if (salvar()) {
+                for (Path log : logs) {
+                    try {
+                        Files.deleteIfExists(log);
+                    } catch (IOException e) {
+                        System.out.println("Falha ao remover log: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return O snapshot no formato configurado ou, sem ele, o do outro formato (troca de kanban.snapshot).
+         */
+        Path snapshotParaLer() {
+            Path p = (SNAPSHOT_BINARIO ? bin : csv), outro = (SNAPSHOT_BINARIO ? csv : bin);
+            return !Files.exists(p) && Files.exists(outro) ? outro : p;
+        }
+
+        /**
+         * Monta, em uma thread separada, o índice de busca das tarefas carregadas por carregar(), em lotes de
+         * LOTE_BUSCA sob a trava de escrita: a carga não espera a indexação e as requisições só esperam um
+         * lote. Até o fim, GET /api/tasks/search responde 503.
+         */
+        void indexarBusca() {
+            if (tarefas.pendentesBusca() == 0) return;
+            Thread t = new Thread(() -> {
+                long t0 = System.nanoTime();
+                boolean resta;
+                do {
+                    long stamp = tarefas.trava.writeLock();
+                    try {
+                        resta = tarefas.indexarPendentes(LOTE_BUSCA);
+                    } finally {
+                        tarefas.trava.unlockWrite(stamp);
+                    }
+                } while (resta && emUso.get() >= 0); // Para se o quadro for descarregado
+                if (resta) return;
+                System.out.printf("Índice de busca do quadro %s pronto: %d termos em %d ms%n", nome, tarefas.termosBusca(),
+                        (System.nanoTime() - t0) / 1_000_000);
+            }, "kanban-busca");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * Lê um snapshot para o armazenamento, conforme a extensão do arquivo (.bin ou CSV).
+         * @param p O caminho do snapshot.
+         * @return A quantidade de blocos convertidos em paralelo (0 se a leitura foi sequencial).
+         * @throws IOException Em caso de erro de leitura ou de um snapshot binário inválido.
+         */
+        int lerSnapshot(Path p) throws IOException {
+            return p.toString().endsWith(".bin") ? SnapshotBinario.carregar(p, tarefas) : CargaCsv.carregar(p, tarefas);
+        }
+
+        /**
+         * Grava o snapshot do quadro no formato configurado (kanban.snapshot) e remove o do outro formato,
+         * que ficaria desatualizado e seria lido por engano se a configuração voltasse atrás.
+         * @param s A cópia das tarefas.
+         * @throws IOException Em caso de erro de escrita.
+         */
+        void gravarSnapshotAtual(Snapshot s) throws IOException {
+            long inicio = System.nanoTime();
+            gravarSnapshot((SNAPSHOT_BINARIO ? bin : csv), s);
+            Metricas.GRAVACAO_SNAPSHOT.registrar(System.nanoTime() - inicio);
+            Files.deleteIfExists((SNAPSHOT_BINARIO ? csv : bin));
+        }
+
+        /**
+         * Exporta o quadro (snapshot e logs) para um arquivo .csv ou .bin ("java App.java --exportar arquivo").
+         * @param destino O arquivo a gravar.
+         * @throws IOException Em caso de erro de escrita.
+         */
+        void exportar(Path destino) throws IOException {
+            carregar();
+            long t0 = System.nanoTime();
+            gravarSnapshot(destino, tarefas.capturar());
+            System.out.printf("Exportadas %d tarefas para %s em %d ms%n", tarefas.tamanho(), destino,
+                    (System.nanoTime() - t0) / 1_000_000);
+        }
+
+        /**
+         * Substitui o quadro pelo conteúdo de um arquivo .csv ou .bin ("java App.java --importar arquivo").
+         * O servidor deve estar parado: o snapshot é regravado no formato configurado e os logs são descartados.
+         * @param origem O arquivo a ler.
+         * @throws IOException Em caso de erro de leitura ou escrita.
+         */
+        void importar(Path origem) throws IOException {
+            long t0 = System.nanoTime();
+            tarefas.limpar();
+            lerSnapshot(origem);
+            tarefas.compactar(tarefas.congelar());
+            gravarSnapshotAtual(tarefas.capturar());
+            for (long g : geracoesLog()) Files.deleteIfExists(logGeracao(g));
+            Files.deleteIfExists(log);
+            System.out.printf("Importadas %d tarefas de %s em %d ms%n", tarefas.tamanho(), origem,
+                    (System.nanoTime() - t0) / 1_000_000);
+        }
+
+        /**
+         * Reaplica os registros de um arquivo de log sobre o estado em memória.
+         * A aplicação é idempotente (criação funciona como upsert, exclusão de ID inexistente é ignorada),
+         * então reaplicar um log já refletido no snapshot não altera o resultado.
+         * A leitura para no primeiro registro incompleto ou corrompido (escrita interrompida por uma queda).
+         * @param log O caminho do arquivo de log.
+         */
+        void reproduzirLog(Path log) {
+            try (BufferedReader br = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+                String reg;
+                while ((reg = lerRegistro(br)) != null) {
+                    if (reg.isBlank()) continue;
+                    int fim = reg.lastIndexOf(';'); // O último campo é o CRC32 do restante do registro
+                    if (fim <= 0 || !crc(reg.substring(0, fim)).equals(reg.substring(fim + 1))) {
+                        System.out.println("Log truncado em " + log + ", descartando o restante");
+                        return;
+                    }
+                    String[] a = splitCsv(reg.substring(0, fim));
+                    if (!"L".equals(a[0])) {
+                        aplicarRegistro(a);
+                        continue;
+                    }
+                    // Lote: só é aplicado se todos os seus registros chegaram inteiros ao disco
+                    int qtd = a.length < 2 ? 0 : parseIntSafe(a[1], 0);
+                    List<String[]> lote = new ArrayList<>(Math.min(qtd, 1 << 16));
+                    for (int k = 0; k < qtd; k++) {
+                        String r = lerRegistro(br);
+                        int f = r == null ? -1 : r.lastIndexOf(';');
+                        if (f <= 0 || !crc(r.substring(0, f)).equals(r.substring(f + 1))) {
+                            System.out.println("Lote incompleto em " + log + ", descartando o restante");
+                            return;
+                        }
+                        lote.add(splitCsv(r.substring(0, f)));
+                    }
+                    lote.forEach(this::aplicarRegistro);
+                }
+            } catch (IOException e) {
+                System.out.println("Falha ao ler log: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Aplica um registro do log (C, S ou D) já conferido e separado em campos.
+         * @param a Os campos do registro.
+         */
+        void aplicarRegistro(String[] a) {
+            switch (a[0]) {
+                case "C" -> {
+                    if (a.length < 6) return;
+                    int i = findIdxById(a[1]);
+                    int st = clampStatus(parseIntSafe(a[4], 0));
+                    long criado = parseLongSafe(a[5], System.currentTimeMillis());
+                    if (i < 0) tarefas.inserir(a[1], a[2], a[3], st, criado, criado);
+                    else tarefas.atualizar(i, a[2], a[3], st, criado, criado);
+                }
+                case "S" -> {
+                    if (a.length < 3) return;
+                    int i = findIdxById(a[1]);
+                    // Registros sem o horário da mudança (logs antigos) contam o status a partir da criação
+                    if (i >= 0) tarefas.definirStatus(i, clampStatus(parseIntSafe(a[2], 0)),
+                            a.length > 3 ? parseLongSafe(a[3], tarefas.criado(i)) : tarefas.criado(i));
+                }
+                case "D" -> {
+                    int i = findIdxById(a[1]);
+                    if (i >= 0) tarefas.remover(i);
+                }
+                default -> System.out.println("Registro de log desconhecido: " + a[0]);
+            }
+        }
+
+        /**
+         * Aplica um registro lido do log do primário (modo seguidor) e publica o evento correspondente no
+         * feed, como a mutação original fez no primário. Deve ser chamado sob a trava de escrita.
+         * @param a Os campos do registro.
+         */
+        void aplicarReplicado(String[] a) {
+            int antes = a.length > 1 ? findIdxById(a[1]) : -1;
+            aplicarRegistro(a);
+            int i = a.length > 1 ? findIdxById(a[1]) : -1;
+            if (i >= 0) publicarTarefa(antes < 0 ? "criada" : "status", i);
+            else if (antes >= 0) publicarExclusao(a[1]);
+        }
+
+        /**
+         * Salva as tarefas da memória no snapshot (CSV ou binário, conforme kanban.snapshot).
+         * O conteúdo é escrito em um arquivo temporário e movido atomicamente sobre o snapshot
+         * anterior, para que uma queda no meio da escrita nunca destrua o arquivo existente.
+         * @return true se o snapshot foi gravado com sucesso.
+         */
+        boolean salvar() {
+            try {
+                gravarSnapshotAtual(tarefas.capturar());
+                return true;
+            } catch (IOException e) {
+                System.out.println("Falha ao salvar snapshot: " + e.getMessage()); // Imprime erro em caso de falha na escrita
+                return false;
+            }
+        }
+
+        /**
+         * Cria uma tarefa e registra a criação no log.
+         * A mutação e o registro no log acontecem sob a trava de escrita do armazenamento, para que a ordem
+         * do log seja a mesma da memória; a espera pelo fsync acontece depois, fora da trava.
+         * @return Um mapa contendo os detalhes da tarefa criada.
+         * @throws CapacidadeExcedidaException Se o limite de tarefas ou de memória foi atingido.
+         * @throws IOException Se o registro não pôde ser gravado.
+         */
+        Map<String, Object> criarTarefa(String titulo, String descr) throws IOException {
+            Map<String, Object> t;
+            long seq;
+            long stamp = tarefas.trava.writeLock();
+            try {
+                verificarLog();
+                int i = tarefas.criar(titulo, descr);
+                t = mapOf(i);
+                seq = registrar(registroCriacao(i));
+                publicarTarefa("criada", i);
+            } finally {
+                tarefas.trava.unlockWrite(stamp);
+            }
+            confirmar(seq);
+            return t;
+        }
+
+        /**
+         * Altera o status de uma tarefa e registra a mudança no log.
+         * @return Um mapa com a tarefa atualizada, ou null se o ID não existir.
+         * @throws IOException Se o registro não pôde ser gravado.
+         */
+        Map<String, Object> moverTarefa(String id, int st) throws IOException {
+            Map<String, Object> t;
+            long seq;
+            long stamp = tarefas.trava.writeLock();
+            try {
+                verificarLog();
+                int i = findIdxById(id); // Encontra a posição da tarefa pelo ID
+                if (i < 0) return null;
+                tarefas.definirStatus(i, st, System.currentTimeMillis()); // Atualiza o status da tarefa
+                t = mapOf(i);
+                seq = registrar(registroStatus(id, st, tarefas.desde(i)));
+                publicarTarefa("status", i);
+            } finally {
+                tarefas.trava.unlockWrite(stamp);
+            }
+            confirmar(seq);
+            return t;
+        }
+
+        /**
+         * Exclui uma tarefa e registra a exclusão no log.
+         * @return true se a tarefa existia e foi excluída.
+         * @throws IOException Se o registro não pôde ser gravado.
+         */
+        boolean excluirTarefa(String id) throws IOException {
+            long seq;
+            long stamp = tarefas.trava.writeLock();
+            try {
+                verificarLog();
+                int i = findIdxById(id); // Encontra a posição da tarefa pelo ID
+                if (i < 0) return false;
+                tarefas.remover(i); // Remove a tarefa do armazenamento em memória
+                seq = registrar(registroRemocao(id));
+                publicarExclusao(id);
+            } finally {
+                tarefas.trava.unlockWrite(stamp);
+            }
+            confirmar(seq);
+            return true;
+        }
+
+        /**
+         * Aplica um lote de operações de forma atômica: todas são validadas antes de qualquer efeito e, se
+         * uma falhar, nenhuma é aplicada (as demais aparecem como 424). Com o lote válido, tudo acontece sob
+         * uma única trava de escrita, vira um único registro de lote no log e espera um único fsync.
+         * Operações aceitas, na forma {"op": ...}:
+         * <ul>
+         *   <li>"criar": titulo, descricao;</li>
+         *   <li>"status": id, status;</li>
+         *   <li>"excluir": id.</li>
+         * </ul>
+         * Mudanças de status e exclusões são aplicadas antes das criações, na ordem do lote; como as criações
+         * geram IDs novos, o resultado é o mesmo da ordem original, e o saldo de capacidade verificado na
+         * validação vale em todos os passos intermediários.
+         * @param ops As operações, já lidas do corpo.
+         * @param w Onde escrever o array de resultados, um por operação, na ordem do lote.
+         * @return O código HTTP da resposta: 200, ou o código da primeira operação inválida.
+         * @throws IOException Se o lote não pôde ser gravado.
+         */
+        int aplicarLote(List<Campos> ops, JsonWriter w) throws IOException {
+            int n = ops.size();
+            int[] codigo = new int[n]; // Resultado de cada operação
+            String[] erro = new String[n]; // Mensagem das operações inválidas
+            int[] pos = new int[n]; // Tarefa alvo de cada status/exclusão
+            byte[][] resultado = new byte[n][]; // Tarefa resultante de cada criação/status
+            int falha = 0;
+            long seq;
+            long stamp = tarefas.trava.writeLock();
+            try {
+                verificarLog();
+                // 1) Validação, sem efeitos
+                int novas = 0, removidas = 0;
+                long custoNovas = 0, custoRemovidas = 0;
+                Set<Integer> excluidas = new HashSet<>(); // Posições excluídas por operações anteriores do lote
+                for (int k = 0; k < n; k++) {
+                    Campos op = ops.get(k);
+                    int i = op.id == null ? -1 : findIdxById(op.id);
+                    if ("criar".equals(op.op)) {
+                        if (op.titulo == null || op.titulo.isBlank()) {
+                            codigo[k] = 400;
+                            erro[k] = "titulo obrigatório";
+                        } else {
+                            if (op.descricao == null) op.descricao = "";
+                            novas++;
+                            custoNovas += TaskStore.custo(op.titulo, op.descricao);
+                        }
+                    } else if ("status".equals(op.op) || "excluir".equals(op.op)) {
+                        if (op.id == null) {
+                            codigo[k] = 400;
+                            erro[k] = "id ausente";
+                        } else if ("status".equals(op.op) && !op.temStatus) {
+                            codigo[k] = 400;
+                            erro[k] = "status ausente";
+                        } else if (i < 0 || excluidas.contains(i)) {
+                            codigo[k] = 404;
+                            erro[k] = "not found";
+                        } else {
+                            pos[k] = i;
+                            if ("excluir".equals(op.op)) {
+                                excluidas.add(i);
+                                removidas++;
+                                custoRemovidas += tarefas.custo(i);
+                            }
+                        }
+                    } else {
+                        codigo[k] = 400;
+                        erro[k] = "op inválida (criar, status ou excluir)";
+                    }
+                    if (falha == 0) falha = codigo[k];
+                }
+                if (falha == 0 && novas > 0) {
+                    try {
+                        tarefas.reservar(novas - removidas, custoNovas - custoRemovidas);
+                    } catch (CapacidadeExcedidaException e) {
+                        falha = 507;
+                        for (int k = 0; k < n; k++) {
+                            if (!"criar".equals(ops.get(k).op)) continue;
+                            codigo[k] = 507;
+                            erro[k] = e.getMessage();
+                        }
+                    }
+                }
+
+                // 2) Aplicação: status e exclusões na ordem do lote, depois as criações
+                List<String> registros = new ArrayList<>(falha == 0 ? n : 0);
+                long agora = System.currentTimeMillis(); // As mudanças de status do lote acontecem no mesmo instante
+                for (int k = 0; k < n && falha == 0; k++) {
+                    Campos op = ops.get(k);
+                    if ("status".equals(op.op)) {
+                        int st = clampStatus(op.status);
+                        tarefas.definirStatus(pos[k], st, agora);
+                        registros.add(registroStatus(tarefas.id(pos[k]), st, tarefas.desde(pos[k])));
+                        resultado[k] = tarefaJSON(pos[k]);
+                        feed.publicar(tarefas.versao(), "status", resultado[k]);
+                        codigo[k] = 200;
+                    } else if ("excluir".equals(op.op)) {
+                        String id = tarefas.id(pos[k]);
+                        tarefas.remover(pos[k]);
+                        registros.add(registroRemocao(id));
+                        publicarExclusao(id);
+                        codigo[k] = 204;
+                    }
+                }
+                for (int k = 0; k < n && falha == 0; k++) {
+                    Campos op = ops.get(k);
+                    if (!"criar".equals(op.op)) continue;
+                    int i = tarefas.criar(op.titulo, op.descricao);
+                    registros.add(registroCriacao(i));
+                    resultado[k] = tarefaJSON(i);
+                    feed.publicar(tarefas.versao(), "criada", resultado[k]);
+                    codigo[k] = 200;
+                }
+                seq = registrarLote(registros);
+            } finally {
+                tarefas.trava.unlockWrite(stamp);
+            }
+            confirmar(seq);
+
+            w.raw("{\"aplicadas\":").num(falha == 0 ? n : 0).raw(",\"resultados\":[");
+            for (int k = 0; k < n; k++) {
+                if (k > 0) w.raw(',');
+                int c = falha != 0 && codigo[k] == 0 ? 424 : codigo[k]; // 424: válida, mas o lote falhou
+                w.raw("{\"codigo\":").num(c);
+                if (resultado[k] != null) {
+                    w.raw(",\"tarefa\":");
+                    w.bytes(resultado[k]);
+                } else if (c == 204) {
+                    w.raw(",\"id\":").str(ops.get(k).id);
+                } else if (erro[k] != null) {
+                    w.raw(",\"error\":").str(erro[k]);
+                }
+                w.raw('}');
+            }
+            w.raw("]}");
+            return falha == 0 ? 200 : falha;
+        }
+
+        /**
+         * Publica no feed de mudanças a tarefa da posição i. Deve ser chamado sob a trava de escrita.
+         * @param tipo "criada" ou "status".
+         * @param i A posição da tarefa.
+         */
+        void publicarTarefa(String tipo, int i) {
+            feed.publicar(tarefas.versao(), tipo, tarefaJSON(i));
+        }
+
+        /**
+         * @return A tarefa da posição i como objeto JSON em UTF-8.
+         */
+        byte[] tarefaJSON(int i) {
+            ByteArrayOutputStream b = new ByteArrayOutputStream(256);
+            JsonWriter w = new JsonWriter(b, 256);
+            try {
+                escreverTarefa(w, i);
+                w.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // ByteArrayOutputStream não lança IOException
+            }
+            return b.toByteArray();
+        }
+
+        /**
+         * Publica no feed de mudanças a exclusão de uma tarefa. Deve ser chamado sob a trava de escrita.
+         */
+        void publicarExclusao(String id) {
+            feed.publicar(tarefas.versao(), "excluida", ("{\"id\":\"" + jsonEsc(id) + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Anexa um registro ao buffer do log de mutações. Deve ser chamado sob a trava de escrita.
+         * @param registro O registro (sem CRC e sem quebra de linha).
+         * @return A sequência a ser confirmada com confirmar(), ou 0 quando não há log aberto.
+         */
+        long registrar(String registro) {
+            return wal == null ? 0 : wal.anexar(registro + ";" + crc(registro) + "\n");
+        }
+
+        /**
+         * Anexa os registros de um lote ao log como uma unidade: um cabeçalho "L" com a quantidade, seguido
+         * dos registros. Na reaplicação, um lote incompleto é descartado inteiro. Deve ser chamado sob a
+         * trava de escrita.
+         * @param registros Os registros do lote (sem CRC e sem quebra de linha).
+         * @return A sequência a ser confirmada com confirmar(), ou 0 quando não há log aberto.
+         */
+        long registrarLote(List<String> registros) {
+            if (wal == null || registros.isEmpty()) return 0;
+            StringBuilder sb = new StringBuilder(registros.size() * 64);
+            String cab = "L;" + registros.size();
+            sb.append(cab).append(';').append(crc(cab)).append('\n');
+            for (String r : registros) sb.append(r).append(';').append(crc(r)).append('\n');
+            return wal.anexar(sb.toString());
+        }
+
+        /**
+         * Recusa a mutação se um lote do log já falhou. A mutação é aplicada na memória e publicada no feed
+         * antes do fsync, então quando um lote falha as mutações dele (e as que chegaram até aqui) já foram
+         * vistas por leituras e somem no reinício; a partir desta verificação o quadro fica fechado para
+         * escrita, sem nenhuma outra mutação respondida, até o servidor ser reiniciado. Deve ser chamado sob
+         * a trava de escrita, antes de qualquer efeito.
+         * @throws IOException Se o log de mutações parou de gravar.
+         */
+        void verificarLog() throws IOException {
+            IOException f = wal == null ? null : wal.falha();
+            if (f != null) throw new IOException("log do quadro " + nome + " parou de gravar: " + f.getMessage(), f);
+        }
+
+        /**
+         * Aguarda até que o registro esteja em disco (somente no modo sync; no async a gravação fica para o
+         * próximo lote) e, em seguida, dispara a compactação em segundo plano se o log ficou grande demais.
+         * Deve ser chamado fora da trava de escrita.
+         * @param seq A sequência retornada por registrar().
+         * @throws IOException Se o lote que continha o registro não pôde ser gravado (e o quadro passa a
+         *                     recusar mutações, ver verificarLog()).
+         */
+        void confirmar(long seq) throws IOException {
+            if (wal == null) return;
+            if (!ASSINCRONO) wal.aguardar(seq);
+            compactarSeNecessario();
+        }
+
+        /**
+         * Compacta o log quando ele passa de LOG_COMPACTAR_BYTES.
+         * Congela uma cópia das tarefas (somente colunas primitivas, sem I/O), rotaciona o log ativo para uma
+         * nova geração e, em uma thread separada, decodifica os textos e grava o snapshot. Ao terminar, apaga
+         * os logs cobertos pelo snapshot. Se a thread falhar, os logs rotacionados continuam no disco e são
+         * reaplicados na próxima inicialização.
+         * @throws IOException Em caso de erro ao rotacionar o log.
+         */
+        void compactarSeNecessario() throws IOException {
+            // Com o log em falha não há compactação: o snapshot tornaria duráveis mutações que falharam
+            if (compactando || wal.tamanho() < LOG_COMPACTAR_BYTES || wal.falha() != null) return;
+            final TaskStore.Captura c;
+            final long geracao;
+            // A cópia e a rotação acontecem sob a trava de escrita: o snapshot cobre exatamente o log rotacionado
+            long stamp = tarefas.trava.writeLock();
+            try {
+                if (compactando || wal.tamanho() < LOG_COMPACTAR_BYTES) return; // Outra thread já compactou
+                compactando = true;
+                c = tarefas.congelar();
+                // Aproveita a cópia para reorganizar as posições quando mais da metade delas são lápides
+                // ou mais da metade da arena de textos é lixo
+                if (tarefas.fragmentado()) tarefas.compactar(c);
+                geracao = ++geracaoLog;
+                wal.rotacionar(logGeracao(geracao));
+            } catch (IOException e) {
+                compactando = false;
+                throw e;
+            } finally {
+                tarefas.trava.unlockWrite(stamp);
+            }
+            Thread t = new Thread(() -> {
+                try {
+                    gravarSnapshotAtual(c.snapshot());
+                    for (long g : geracoesLog()) {
+                        if (g <= geracao) Files.deleteIfExists(logGeracao(g));
+                    }
+                } catch (IOException e) {
+                    System.out.println("Falha ao compactar log: " + e.getMessage());
+                } finally {
+                    compactando = false;
+                }
+            }, "kanban-compactacao");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * Lista, em ordem crescente, as gerações de logs rotacionados presentes no disco ("data_tasks.log.N").
+         * @return As gerações encontradas.
+         */
+        long[] geracoesLog() {
+            Path dir = log.toAbsolutePath().getParent();
+            String prefixo = log.getFileName() + ".";
+            List<Long> out = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, prefixo + "*")) {
+                for (Path f : ds) {
+                    long g = parseLongSafe(f.getFileName().toString().substring(prefixo.length()), -1);
+                    if (g > 0) out.add(g);
+                }
+            } catch (IOException e) {
+                System.out.println("Falha ao listar logs: " + e.getMessage());
+            }
+            Collections.sort(out);
+            return out.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        /**
+         * Monta o registro de log para a criação da tarefa na posição informada.
+         * @param i A posição da tarefa no armazenamento.
+         * @return O registro "C;id;titulo;descricao;status;criadoEm".
+         */
+        String registroCriacao(int i) {
+            return "C;" + esc(tarefas.id(i)) + ";" + esc(tarefas.titulo(i)) + ";" + esc(tarefas.descr(i)) + ";"
+                    + tarefas.status(i) + ";" + tarefas.criado(i);
+        }
+
+        /**
+         * Cria uma nova tarefa e a adiciona ao armazenamento em memória.
+         * @param titulo O título da nova tarefa.
+         * @param descr A descrição da nova tarefa.
+         * @return Um mapa contendo os detalhes da tarefa criada.
+         * @throws CapacidadeExcedidaException Se o limite de tarefas ou de memória foi atingido.
+         */
+        Map<String, Object> criar(String titulo, String descr) {
+            return mapOf(tarefas.criar(titulo, descr)); // Retorna um mapa da tarefa recém-criada
+        }
+
+        /**
+         * Avisa quando os dados carregados já ultrapassam os limites configurados;
+         * nada é descartado, mas novas criações serão recusadas.
+         */
+        void avisarSeAcimaDosLimites() {
+            if (tarefas.tamanho() > MAX_TAREFAS || tarefas.bytes() > MAX_MEMORIA) {
+                System.out.println("Aviso: " + tarefas.tamanho() + " tarefas (~" + (tarefas.bytes() >> 20)
+                        + " MB) carregadas acima dos limites configurados; novas tarefas serão recusadas");
+            }
+        }
+
+        /**
+         * Encontra a posição de uma tarefa no armazenamento pelo seu ID, usando o índice de chave primária.
+         * @param id O ID da tarefa a ser encontrada.
+         * @return A posição da tarefa se encontrada, ou -1 se não encontrada.
+         */
+        int findIdxById(String id) {
+            return tarefas.buscar(id); // Consulta O(1) no índice de IDs
+        }
+
+        /**
+         * Cria um mapa (LinkedHashMap) com os detalhes de uma tarefa a partir de sua posição.
+         * @param i A posição da tarefa no armazenamento.
+         * @return Um mapa contendo os detalhes da tarefa.
+         */
+        Map<String, Object> mapOf(int i) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", tarefas.id(i));
+            m.put("titulo", tarefas.titulo(i));
+            m.put("descricao", tarefas.descr(i));
+            m.put("status", tarefas.status(i));
+            m.put("criadoEm", tarefas.criado(i));
+            return m;
+        }
+
+        /**
+         * Gera uma string JSON representando todas as tarefas em memória, em um único ponto no tempo.
+         * @return Uma string JSON de um array de objetos de tarefa.
+         */
+        String listarJSON() {
+            // Leitura consistente: otimista primeiro, com a trava de leitura se houve escrita no meio
+            return new String(tarefas.ler(this::serializarLista), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Serializa a lista completa de tarefas em UTF-8. Não adquire travas: deve rodar dentro de
+         * tarefas.ler() ou sob a trava de leitura.
+         * @return Os bytes do array JSON.
+         */
+        byte[] serializarLista() {
+            ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            try {
+                JsonWriter w = new JsonWriter(bo, BUFFER_JSON);
+                w.raw('['); // Inicia o JSON como um array
+                int limite = tarefas.tamanho(); // Uma leitura otimista pode ver a lista inconsistente; evita laços
+                // Percorre as tarefas em ordem de criação, ignorando as posições livres
+                for (int i = tarefas.primeiro(), k = 0; i >= 0; i = tarefas.proximo(i)) {
+                    if (k++ > limite) throw new ConcurrentModificationException();
+                    if (k > 1) w.raw(','); // Adiciona vírgula entre os objetos, exceto para o primeiro
+                    escreverTarefa(w, i); // Adiciona a representação JSON de cada tarefa
+                }
+                w.raw(']'); // Fecha o array JSON
+                w.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Não acontece com ByteArrayOutputStream
+            }
+            return bo.toByteArray();
+        }
+
+        /**
+         * Responde GET /api/tasks.
+         * Enquanto a versão do armazenamento não muda, a lista serializada (e sua versão gzip) vem do cache;
+         * o ETag identifica a versão e If-None-Match correspondente recebe 304 sem corpo. Listas maiores que
+         * kanban.cacheListaMb não são mantidas em memória e seguem em streaming, sem ETag.
+         * @param ex O HttpExchange da requisição.
+         * @throws IOException Em caso de erro de I/O.
+         */
+        void responderLista(HttpExchange ex) throws IOException {
+            Headers h = ex.getResponseHeaders();
+            h.set("Content-Type", "application/json; charset=utf-8");
+            ListCache.Entrada e = cacheLista.obter();
+            if (e == null) {
+                h.set("Vary", "Accept-Encoding");
+                boolean comprimir = aceitaGzip(ex);
+                if (comprimir) h.set("Content-Encoding", "gzip");
+                ex.sendResponseHeaders(200, 0); // Tamanho 0 = chunked transfer encoding
+                // Escreve a lista de tarefas em JSON direto no corpo da resposta, com buffer fixo; comprimida no
+                // nível mais rápido, já que a compressão acontece a cada requisição
+                try (OutputStream os = comprimir ? gzip(ex.getResponseBody(), Deflater.BEST_SPEED) : ex.getResponseBody()) {
+                    listarJSON(os);
+                }
+                return;
+            }
+            boolean comprimir = e.json.length >= GZIP_MIN && aceitaGzip(ex);
+            h.set("ETag", comprimir ? e.etagGzip : e.etag); // Um ETag por codificação: os bytes são diferentes
+            h.set("Cache-Control", "no-cache"); // O navegador guarda a resposta, mas revalida com If-None-Match
+            h.set("Vary", "Accept-Encoding");
+            if (etagCorresponde(ex.getRequestHeaders().getFirst("If-None-Match"), e.etag)) {
+                ex.sendResponseHeaders(304, -1); // Não mudou: sem corpo
+                ex.close();
+                return;
+            }
+            byte[] corpo = e.json;
+            if (comprimir) {
+                corpo = e.gzip();
+                h.set("Content-Encoding", "gzip");
+            }
+            ex.sendResponseHeaders(200, corpo.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(corpo);
+            }
+        }
+
+        /**
+         * Abre o feed de mudanças para esta requisição. O ponto de partida é o cabeçalho Last-Event-ID
+         * (enviado pelo EventSource ao reconectar) ou o parâmetro "desde", que aceita o ETag da listagem;
+         * sem nenhum dos dois, o cliente recebe apenas as mudanças a partir de agora.
+         * A resposta fica aberta; os eventos são escritos pelo pool do feed.
+         * @param ex O HttpExchange da requisição.
+         * @param desde O parâmetro "desde" da URL, ou null.
+         * @throws IOException Em caso de erro de I/O.
+         */
+        void assinarEventos(HttpExchange ex, String desde) throws IOException {
+            String ultimoId = ex.getRequestHeaders().getFirst("Last-Event-ID");
+            if (ultimoId == null) ultimoId = desde;
+            Headers h = ex.getResponseHeaders();
+            h.set("Content-Type", "text/event-stream; charset=utf-8");
+            h.set("Cache-Control", "no-cache");
+            ex.sendResponseHeaders(200, 0); // Chunked, sem fim definido
+            OutputStream os = ex.getResponseBody();
+            os.write("retry: 2000\n\n".getBytes(StandardCharsets.US_ASCII)); // Intervalo de reconexão do EventSource
+            os.flush();
+            feed.assinar(ex, ultimoId);
+        }
+
+        /**
+         * Responde GET /api/tasks com parâmetros de consulta, usando os índices por status:
+         * <ul>
+         *   <li>status: 0, 1 ou 2 (somente uma coluna do Kanban);</li>
+         *   <li>criadoDesde: menor timestamp de criação, em milissegundos;</li>
+         *   <li>ordem: "asc" (padrão, mais antigas primeiro) ou "desc" (mais recentes primeiro);</li>
+         *   <li>limit: tamanho da página (sem limite se ausente);</li>
+         *   <li>cursor: valor do cabeçalho X-Next-Cursor da página anterior.</li>
+         * </ul>
+         * O corpo continua sendo um array JSON; quando a página enche, o cabeçalho X-Next-Cursor traz o
+         * cursor da próxima.
+         * @param ex O HttpExchange da requisição.
+         * @param q Os parâmetros da consulta.
+         * @throws IOException Em caso de erro de I/O.
+         */
+        void responderConsulta(HttpExchange ex, Map<String, String> q) throws IOException {
+            int st = -1;
+            if (q.containsKey("status")) {
+                st = parseIntSafe(q.get("status"), -1);
+                if (st < 0 || st > 2) {
+                    sendJson(ex, 400, "{\"error\":\"status inválido\"}");
+                    return;
+                }
+            }
+            int limite = Integer.MAX_VALUE;
+            if (q.containsKey("limit")) {
+                limite = parseIntSafe(q.get("limit"), -1);
+                if (limite <= 0) {
+                    sendJson(ex, 400, "{\"error\":\"limit inválido\"}");
+                    return;
+                }
+            }
+            TaskStore.Chave cursor = null;
+            if (q.containsKey("cursor")) {
+                cursor = TaskStore.Chave.deCursor(q.get("cursor"));
+                if (cursor == null) {
+                    sendJson(ex, 400, "{\"error\":\"cursor inválido\"}");
+                    return;
+                }
+            }
+            long desde = q.containsKey("criadoDesde") ? parseLongSafe(q.get("criadoDesde"), Long.MIN_VALUE) : Long.MIN_VALUE;
+            boolean desc = "desc".equalsIgnoreCase(q.get("ordem"));
+
+            ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            JsonWriter w = new JsonWriter(bo, BUFFER_JSON);
+            String proximo = null;
+            long stamp = tarefas.trava.readLock();
+            try {
+                int[] pos = tarefas.consultar(st, cursor, desde, desc, limite);
+                w.raw('[');
+                for (int k = 0; k < pos.length; k++) {
+                    if (k > 0) w.raw(',');
+                    escreverTarefa(w, pos[k]);
+                }
+                w.raw(']');
+                // Página cheia: pode haver mais tarefas depois da última entregue
+                if (pos.length == limite) proximo = tarefas.chave(pos[pos.length - 1]).cursor();
+            } finally {
+                tarefas.trava.unlockRead(stamp);
+            }
+            w.flush();
+            if (proximo != null) ex.getResponseHeaders().set("X-Next-Cursor", proximo);
+            sendJson(ex, 200, bo.toByteArray());
+        }
+
+        /**
+         * Responde GET /api/tasks/search com as tarefas que contêm todos os termos de "q" (por prefixo, sem
+         * diferenciar acentos e maiúsculas), da mais relevante para a menos relevante. Parâmetros:
+         * <ul>
+         *   <li>q: o texto da busca (obrigatório).</li>
+         *   <li>limit: quantidade máxima de resultados (padrão 20, no máximo 1000).</li>
+         *   <li>status: restringe a uma coluna (0, 1 ou 2).</li>
+         * </ul>
+         * O corpo é um array JSON como o da listagem; o cabeçalho X-Total-Count traz quantas tarefas casaram.
+         * @param ex O HttpExchange da requisição.
+         * @param q Os parâmetros da consulta.
+         * @throws IOException Em caso de erro de I/O.
+         */
+        void responderBusca(HttpExchange ex, Map<String, String> q) throws IOException {
+            String texto = q.get("q");
+            if (texto == null || texto.isBlank()) {
+                sendJson(ex, 400, "{\"error\":\"q obrigatório\"}");
+                return;
+            }
+            int st = -1;
+            if (q.containsKey("status")) {
+                st = parseIntSafe(q.get("status"), -1);
+                if (st < 0 || st > 2) {
+                    sendJson(ex, 400, "{\"error\":\"status inválido\"}");
                     return;
                 }
-
-                // POST /api/tasks: Cria uma nova tarefa
-                if ("POST".equals(method) && "/api/tasks".equals(path)) {
-                    String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8); // Lê o corpo da requisição
-                    String titulo = jsonGet(body, "titulo"); // Extrai o título do JSON
-                    String descricao = jsonGet(body, "descricao"); // Extrai a descrição do JSON
-                    // Valida se o título é obrigatório
-                    if (titulo == null || titulo.isBlank()) {
-                        sendJson(ex, 400, "{\"error\":\"titulo obrigatório\"}"); // Retorna erro 400 se o título estiver ausente
-                        return;
-                    }
-                    // Cria a tarefa e a salva
-                    Map<String, Object> t = criar(titulo, descricao == null ? "" : descricao);
-                    salvar(); // Salva as tarefas no CSV
-                    sendJson(ex, 200, toJsonTask(t)); // Retorna a tarefa criada em JSON
+            }
+            int limite = 20;
+            if (q.containsKey("limit")) {
+                limite = parseIntSafe(q.get("limit"), -1);
+                if (limite <= 0 || limite > 1000) {
+                    sendJson(ex, 400, "{\"error\":\"limit inválido\"}");
                     return;
                 }
+            }
 
-                // PATCH /api/tasks/{id}/status: Atualiza o status de uma tarefa
-                if ("PATCH".equals(method) && path.startsWith("/api/tasks/") && path.endsWith("/status")) {
-                    // Extrai o ID da tarefa do caminho da URL
-                    String id = path.substring("/api/tasks/".length(), path.length() - "/status".length());
-                    String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8); // Lê o corpo da requisição
-                    String stStr = jsonGet(body, "status"); // Extrai o status do JSON
-                    // Valida se o status está presente
-                    if (stStr == null) {
-                        sendJson(ex, 400, "{\"error\":\"status ausente\"}");
-                        return;
-                    }
-                    int st = clampStatus(parseIntSafe(stStr, 0)); // Converte e valida o status
-                    int i = findIdxById(id); // Encontra o índice da tarefa pelo ID
-                    // Verifica se a tarefa foi encontrada
-                    if (i < 0) {
-                        sendJson(ex, 404, "{\"error\":\"not found\"}"); // Retorna 404 Not Found
-                        return;
+            ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            JsonWriter w = new JsonWriter(bo, BUFFER_JSON);
+            int total = -1;
+            // Trava de leitura, e não leitura otimista: o índice de busca não tolera escritas concorrentes
+            long stamp = tarefas.trava.readLock();
+            try {
+                IndiceBusca.Resultado r = tarefas.pesquisar(texto, st, limite);
+                if (r != null) {
+                    total = r.total();
+                    w.raw('[');
+                    for (int k = 0; k < r.posicoes().length; k++) {
+                        if (k > 0) w.raw(',');
+                        escreverTarefa(w, r.posicoes()[k]);
                     }
-                    status[i] = st; // Atualiza o status da tarefa
-                    salvar(); // Salva as tarefas no CSV
-                    sendJson(ex, 200, toJsonTask(mapOf(i))); // Retorna a tarefa atualizada em JSON
-                    return;
+                    w.raw(']');
                 }
+            } finally {
+                tarefas.trava.unlockRead(stamp);
+            }
+            if (total < 0) { // As tarefas carregadas ainda estão sendo indexadas
+                ex.getResponseHeaders().set("Retry-After", "1");
+                sendJson(ex, 503, "{\"error\":\"índice de busca em construção\"}");
+                return;
+            }
+            w.flush();
+            ex.getResponseHeaders().set("X-Total-Count", Integer.toString(total));
+            sendJson(ex, 200, bo.toByteArray());
+        }
 
-                // DELETE /api/tasks/{id}: Exclui uma tarefa
-                if ("DELETE".equals(method) && path.startsWith("/api/tasks/")) {
-                    String id = path.substring("/api/tasks/".length()); // Extrai o ID da tarefa do caminho da URL
-                    int i = findIdxById(id); // Encontra o índice da tarefa pelo ID
-                    // Verifica se a tarefa foi encontrada
-                    if (i < 0) {
-                        sendJson(ex, 404, "{\"error\":\"not found\"}"); // Retorna 404 Not Found
-                        return;
-                    }
-                    // Remove a tarefa deslocando os elementos subsequentes
-                    for (int k = i; k < n - 1; k++) {
-                        ids[k] = ids[k + 1];
-                        titulos[k] = titulos[k + 1];
-                        descrs[k] = descrs[k + 1];
-                        status[k] = status[k + 1];
-                        criados[k] = criados[k + 1];
-                    }
-                    n--; // Decrementa o contador de tarefas
-                    salvar(); // Salva as tarefas no CSV
-                    sendJson(ex, 204, ""); // Retorna 204 No Content para indicar sucesso sem conteúdo
+        /**
+         * Responde GET /api/tasks/stats com as estatísticas mantidas incrementalmente pelo armazenamento:
+         * quantidade de tarefas, tempo no status atual e espera desde a criação, por status, e tarefas
+         * criadas por intervalo. Parâmetros:
+         * <ul>
+         *   <li>intervalo: hora, dia ou semana (padrão dia; UTC, semanas a partir de segunda-feira).</li>
+         *   <li>criadoDesde: ignora, na contagem por intervalo, as tarefas criadas antes deste instante (ms, com resolução de uma hora).</li>
+         * </ul>
+         * @param ex O HttpExchange da requisição.
+         * @param q Os parâmetros da consulta.
+         * @throws IOException Em caso de erro de I/O.
+         */
+        void responderEstatisticas(HttpExchange ex, Map<String, String> q) throws IOException {
+            int iv = Estatisticas.intervalo(q.getOrDefault("intervalo", "dia"));
+            if (iv < 0) {
+                sendJson(ex, 400, "{\"error\":\"intervalo inválido (hora, dia ou semana)\"}");
+                return;
+            }
+            long desde = Long.MIN_VALUE;
+            if (q.containsKey("criadoDesde")) {
+                desde = parseLongSafe(q.get("criadoDesde"), Long.MIN_VALUE);
+                if (desde == Long.MIN_VALUE) {
+                    sendJson(ex, 400, "{\"error\":\"criadoDesde inválido\"}");
                     return;
                 }
+            }
+            String json;
+            // Trava de leitura, e não leitura otimista: a contagem por intervalo percorre um TreeMap, que não
+            // tolera escritas concorrentes
+            long stamp = tarefas.trava.readLock();
+            try {
+                json = tarefas.estatisticas(System.currentTimeMillis(), iv, desde);
+            } finally {
+                tarefas.trava.unlockRead(stamp);
+            }
+            sendJson(ex, 200, json);
+        }
 
-                send(ex, 404, ""); // Retorna 404 Not Found para rotas não mapeadas
-            } catch (Exception e) {
-                e.printStackTrace(); // Imprime o stack trace do erro
-                sendJson(ex, 500, "{\"error\":\"server\"}"); // Retorna 500 Internal Server Error
+        /**
+         * Escreve a lista de tarefas em JSON direto no OutputStream, usando um buffer de tamanho fixo.
+         * As tarefas são codificadas em lotes sob a trava de leitura, e a trava é liberada antes de cada
+         * descarga no OutputStream, para que um cliente lento nunca bloqueie as escritas. Cada tarefa sai
+         * consistente, em ordem de criação e exatamente uma vez; tarefas criadas durante o envio aparecem
+         * no fim, e uma tarefa ainda não enviada que for excluída no meio tempo não aparece.
+         * @param out O destino (normalmente o corpo da resposta HTTP).
+         * @throws IOException Em caso de erro de I/O.
+         */
+        void listarJSON(OutputStream out) throws IOException {
+            JsonWriter w = new JsonWriter(out, BUFFER_JSON);
+            w.raw('['); // Inicia o JSON como um array
+            String ultimoId = null; // Última tarefa enviada (ponto de retomada entre lotes)
+            long ultimaOrdem = 0;
+            boolean primeiro = true;
+            while (true) {
+                long stamp = tarefas.trava.readLock();
+                int i;
+                try {
+                    i = tarefas.posicaoApos(ultimoId, ultimaOrdem);
+                    // Codifica tarefas até encher metade do buffer; o restante absorve a última tarefa do lote
+                    for (; i >= 0 && w.pendentes() < BUFFER_JSON / 2; i = tarefas.proximo(i)) {
+                        if (!primeiro) w.raw(','); // Adiciona vírgula entre os objetos, exceto para o primeiro
+                        escreverTarefa(w, i);
+                        primeiro = false;
+                        ultimoId = tarefas.id(i);
+                        ultimaOrdem = tarefas.ordem(i);
+                    }
+                } finally {
+                    tarefas.trava.unlockRead(stamp);
+                }
+                if (i < 0) break;
+                w.flush(); // Envia o lote fora da trava
             }
+            w.raw(']'); // Fecha o array JSON
+            w.flush();
+        }
+
+        /**
+         * Escreve uma tarefa em JSON lendo direto das colunas e da arena de textos do armazenamento
+         * (sem mapa nem Strings intermediárias). Os campos seguem a mesma ordem de toJsonTask().
+         * @param w O escritor JSON.
+         * @param i A posição da tarefa no armazenamento.
+         * @throws IOException Em caso de erro de I/O.
+         */
+        void escreverTarefa(JsonWriter w, int i) throws IOException {
+            w.raw("{\"id\":");
+            tarefas.escreverId(w, i);
+            w.raw(",\"titulo\":");
+            tarefas.escreverTitulo(w, i);
+            w.raw(",\"descricao\":");
+            tarefas.escreverDescr(w, i);
+            w.raw(",\"status\":").num(tarefas.status(i))
+                    .raw(",\"criadoEm\":").num(tarefas.criado(i))
+                    .raw('}');
         }
     }
 
     /**
-     * Conteúdo HTML da página principal da aplicação Kanban.
-     * Inclui estilos CSS e lógica JavaScript para interagir com a API.
+     * Registro dos quadros em memória. Um quadro é carregado no primeiro acesso a /api/boards/{quadro}/tasks
+     * e fica em memória enquanto for usado; quando a memória estimada dos quadros carregados passa de
+     * kanban.quadrosMemoriaMb, os quadros ociosos usados há mais tempo são descarregados (o estado continua
+     * no disco e volta no próximo acesso). O quadro padrão conta no orçamento, mas nunca é descarregado.
      */
-    static final String INDEX_HTML = """
-<!doctype html>
-<html lang="pt-BR">
-<head>
-<meta charset="utf-8"/>
-<meta name="viewport" content="width=device-width,initial-scale=1"/>
-<title>Kanban Local (sem framework)</title>
-<style>
-  :root{--bg:#f6f7fb;--card:#fff;--muted:#666;}
-  *{box-sizing:border-box} body{margin:0;font:16px system-ui,Segoe UI,Roboto,Arial;background:var(--bg)}
-  header{background:#111;color:#fff;padding:12px 16px}
-  .wrap{max-width:1100px;margin:0 auto;padding:16px}
-  form{display:flex;gap:8px;flex-wrap:wrap;margin:12px 0}
-  input,textarea,button,select{border:1px solid #ddd;border-radius:10px;padding:10px;font:inherit}
-  textarea{min-width:260px;min-height:40px}
-  button{cursor:pointer}
-  .board{display:grid;grid-template-columns:repeat(3,1fr);gap:16px}
-  .col{background:var(--card);border-radius:14px;box-shadow:0 6px 16px rgba(0,0,0,.06);padding:12px}
-  .col h2{margin:6px 4px 10px}
-  .task{border:1px solid #eee;border-radius:12px;background:#fafafa;margin:8px 0;padding:10px}
-  .row{display:flex;gap:8px;flex-wrap:wrap;align-items:center}
-  small{color:var(--muted)}
-  .pill{font-size:.75rem;padding:2px 8px;border-radius:999px;background:#eef;border:1px solid #dde}
-</style>
-</head>
-<body>
-<header><b>Kanban Local</b> — Gestão de Atividades</header>
-<div class="wrap">
-
-  <h3>Nova tarefa</h3>
-  <form id="f">
-    <input id="t" placeholder="Título" required>
-    <textarea id="d" placeholder="Descrição (opcional)"></textarea>
-    <button>Adicionar</button>
-  </form>
-
-  <div class="board">
-    <div class="col"><h2>To-Do</h2><div id="todo"></div></div>
-    <div class="col"><h2>Doing</h2><div id="doing"></div></div>
-    <div class="col"><h2>Done</h2><div id="done"></div></div>
-  </div>
-
-</div>
+    static final class Quadros {
+        static final int NOME_MAX = 64;
 
-<script>
-const API = "/api/tasks";
+        private final ConcurrentHashMap<String, Quadro> quadros = new ConcurrentHashMap<>();
+        private final Path dir; // Diretório com um subdiretório por quadro
+        final long limiteBytes; // Orçamento de memória estimada dos quadros carregados
+        final LongAdder descarregados = new LongAdder();
 
-async function listar(){
-  const r = await fetch(API);
-  const data = await r.json();
-  render(data);
-}
+        Quadros(Path dir, long limiteBytes, Quadro padrao) {
+            this.dir = dir;
+            this.limiteBytes = limiteBytes;
+            quadros.put(padrao.nome, padrao);
+        }
 
-function el(html){
-  const t = document.createElement("template");
-  t.innerHTML = html.trim();
-  return t.content.firstChild;
-}
+        /**
+         * @return true se o nome só tem letras minúsculas, dígitos, "_" e "-" (vira nome de diretório).
+         */
+        static boolean nomeValido(String nome) {
+            if (nome.isEmpty() || nome.length() > NOME_MAX) return false;
+            for (int k = 0; k < nome.length(); k++) {
+                char c = nome.charAt(k);
+                if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '_' || c == '-')) return false;
+            }
+            return true;
+        }
 
-// CORRIGIDO: função sem erro de sintaxe
-function escapeHtml(s){
-  return s.replace(/[&<>\""]/g, c => ({
-    '&':'&amp;',
-    '<':'&lt;',
-    '>':'&gt;',
-    '"':'&quot;',
-    "'":'&#039;'
-  }[c]));
-}
+        /**
+         * Obtém o quadro, carregando-o se preciso, e o marca como em uso: ele não é descarregado até liberar().
+         * @param nome O nome do quadro (já validado).
+         * @return O quadro carregado.
+         * @throws IOException Se o quadro não pôde ser carregado.
+         */
+        Quadro obter(String nome) throws IOException {
+            while (true) {
+                Quadro q = quadros.computeIfAbsent(nome, n -> new Quadro(n, dir.resolve(n), false));
+                if (!q.fixar()) {
+                    quadros.remove(nome, q); // Descarregado entre o get e o fixar: cria outra instância
+                    continue;
+                }
+                if (q.carregado()) return q;
+                try {
+                    q.abrir();
+                } catch (IOException | RuntimeException e) {
+                    q.liberar();
+                    throw e;
+                }
+                aplicarLimite(q); // O quadro recém-carregado pode ter estourado o orçamento
+                return q;
+            }
+        }
 
-function card(t){
-  const div = el(`<div class="task">
-      <strong>${escapeHtml(t.titulo)}</strong>
-      <div class="row">
-        <span class="pill">${['TODO','DOING','DONE'][t.status] || t.status}</span>
-        <small>criado: ${new Date(t.criadoEm).toLocaleString()}</small>
-      </div>
-      <p>${escapeHtml(t.descricao||'')}</p>
-      <div class="row">
-        ${t.status!==0?'<button data-prev>◀</button>':''}
-        ${t.status!==2?'<button data-next>▶</button>':''}
-        <button data-del>Excluir</button>
-      </div>
-  </div>`);
+        /**
+         * Desfaz um obter().
+         * @param escrita true se a requisição pode ter aumentado o quadro (confere o orçamento).
+         */
+        void liberar(Quadro q, boolean escrita) {
+            q.liberar();
+            if (escrita && bytes() > limiteBytes) aplicarLimite(q);
+        }
 
-  if(div.querySelector('[data-prev]')){
-    div.querySelector('[data-prev]').onclick=()=>mover(t.id, t.status===2?1:0);
-  }
-  if(div.querySelector('[data-next]')){
-    div.querySelector('[data-next]').onclick=()=>mover(t.id, t.status===0?1:2);
-  }
-  div.querySelector('[data-del]').onclick=()=>excluir(t.id);
-  return div;
-}
+        /**
+         * @return Os quadros carregados no momento.
+         */
+        List<Quadro> carregados() {
+            List<Quadro> r = new ArrayList<>();
+            for (Quadro q : quadros.values()) {
+                if (q.carregado()) r.add(q);
+            }
+            return r;
+        }
 
-function render(arr){
-  ['todo','doing','done'].forEach(id=>document.getElementById(id).innerHTML='');
-  arr.filter(x=>x.status===0).forEach(x=>document.getElementById('todo').appendChild(card(x)));
-  arr.filter(x=>x.status===1).forEach(x=>document.getElementById('doing').appendChild(card(x)));
-  arr.filter(x=>x.status===2).forEach(x=>document.getElementById('done').appendChild(card(x)));
-}
+        /**
+         * @return A memória estimada dos quadros carregados.
+         */
+        long bytes() {
+            long total = 0;
+            for (Quadro q : quadros.values()) {
+                if (q.carregado()) total += q.tarefas.bytes();
+            }
+            return total;
+        }
 
-document.getElementById('f').onsubmit=async (e)=>{
-  e.preventDefault();
-  const titulo = document.getElementById('t').value.trim();
-  const descricao = document.getElementById('d').value.trim();
-  if(!titulo) return;
-  await fetch(API,{method:'POST',headers:{'Content-Type':'application/json'},body:JSON.stringify({titulo,descricao})});
-  e.target.reset(); listar();
-};
+        /**
+         * Descarrega os quadros ociosos usados há mais tempo até a memória estimada voltar ao orçamento.
+         * Quadros em uso, com assinantes de eventos ou compactando ficam; se só restarem esses, o orçamento
+         * é excedido até que algum deles fique ocioso.
+         * @param atual O quadro da requisição que motivou a verificação: fica, mesmo que sozinho passe do
+         *              orçamento (descarregá-lo só faria a próxima requisição carregá-lo de novo).
+         */
+        synchronized void aplicarLimite(Quadro atual) {
+            long total = bytes();
+            if (total <= limiteBytes) return;
+            List<Quadro> lru = carregados();
+            lru.sort(Comparator.comparingLong(q -> q.ultimoAcesso));
+            for (Quadro q : lru) {
+                if (total <= limiteBytes) break;
+                long b = q.tarefas.bytes();
+                if (q == atual || !q.descarregar()) continue;
+                quadros.remove(q.nome, q);
+                descarregados.increment();
+                total -= b;
+                System.out.printf("Quadro %s descarregado (~%d MB)%n", q.nome, b >> 20);
+            }
+        }
 
-async function mover(id,status){
-  await fetch(`${API}/${id}/status`,{method:'PATCH',headers:{'Content-Type':'application/json'},body:JSON.stringify({status})});
-  listar();
-}
-async function excluir(id){
-  await fetch(`${API}/${id}`,{method:'DELETE'}); listar();
-}
+        /**
+         * @return Os quadros (em disco ou carregados) em JSON: [{"nome", "carregado", "tarefas"}], com
+         * "tarefas" somente nos carregados.
+         */
+        String listarJSON() {
+            TreeMap<String, Quadro> todos = new TreeMap<>();
+            todos.put(PADRAO.nome, PADRAO);
+            if (Files.isDirectory(dir)) {
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, Files::isDirectory)) {
+                    for (Path d : ds) {
+                        String n = d.getFileName().toString();
+                        if (nomeValido(n)) todos.putIfAbsent(n, null);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Falha ao listar quadros: " + e.getMessage());
+                }
+            }
+            for (Quadro q : carregados()) todos.put(q.nome, q);
+            StringBuilder sb = new StringBuilder("[");
+            for (Map.Entry<String, Quadro> e : todos.entrySet()) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append("{\"nome\":\"").append(e.getKey()).append("\",\"carregado\":").append(e.getValue() != null);
+                if (e.getValue() != null) sb.append(",\"tarefas\":").append(e.getValue().tarefas.ler(e.getValue().tarefas::tamanho));
+                sb.append('}');
+            }
+            return sb.append(']').toString();
+        }
+    }
 
-listar();
-</script>
-</body>
-</html>
-""";
+    /**
+     * Grava uma cópia das tarefas no formato indicado pela extensão do arquivo (.bin ou CSV).
+     * @param p O caminho de destino.
+     * @param s A cópia das tarefas.
+     * @throws IOException Em caso de erro de escrita.
+     */
+    static void gravarSnapshot(Path p, Snapshot s) throws IOException {
+        if (p.toString().endsWith(".bin")) SnapshotBinario.gravar(p, s);
+        else gravarSnapshot(p, s.ids(), s.titulos(), s.descrs(), s.status(), s.criados(), s.desdes(), s.total());
+    }
 
     /**
-     * Carrega as tarefas do arquivo CSV para a memória.
-     * Se o arquivo não existir, a lista de tarefas permanece vazia.
+     * Leitura sequencial do CSV, registro a registro, para arquivos grandes demais para um único
+     * mapeamento em memória.
+     * @param p O caminho do CSV.
+     * @param tarefas O armazenamento de destino.
+     * @throws IOException Em caso de erro de leitura.
      */
-    static void carregar() {
-        n = 0; // Reseta o contador de tarefas
-        Path p = Paths.get(CSV); // Obtém o caminho do arquivo CSV
-        if (!Files.exists(p)) return; // Se o arquivo não existe, não faz nada
+    static void carregarCsvSequencial(Path p, TaskStore tarefas) throws IOException {
         try (BufferedReader br = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
-            String line; // Variável para armazenar cada linha lida
-            // Lê o arquivo linha por linha
-            while ((line = br.readLine()) != null) {
+            String line; // Variável para armazenar cada registro lido
+            // Lê o arquivo registro por registro (campos entre aspas podem conter quebras de linha)
+            while ((line = lerRegistro(br)) != null) {
                 // Ignora linhas em branco ou a linha de cabeçalho
                 if (line.isBlank() || line.startsWith("id;")) continue;
                 String[] a = splitCsv(line); // Divide a linha em campos CSV
                 if (a.length < 5) continue; // Ignora linhas com menos de 5 campos
-                if (n >= MAX) break; // Interrompe se a capacidade máxima for atingida
-                // Atribui os valores lidos aos arrays em memória
-                ids[n] = a[0];
-                titulos[n] = a[1];
-                descrs[n] = a[2];
-                status[n] = clampStatus(parseIntSafe(a[3], 0)); // Converte e valida o status
-                criados[n] = parseLongSafe(a[4], System.currentTimeMillis()); // Converte e valida o timestamp
-                n++; // Incrementa o contador de tarefas
+                if (tarefas.buscar(a[0]) >= 0) continue; // Ignora IDs duplicados (mantém a primeira ocorrência)
+                // Adiciona a tarefa lida (a carga nunca descarta dados já gravados, mesmo acima dos limites);
+                // snapshots sem a coluna statusDesde contam o status a partir da criação
+                long criado = parseLongSafe(a[4], System.currentTimeMillis());
+                tarefas.inserir(a[0], a[1], a[2], clampStatus(parseIntSafe(a[3], 0)), criado,
+                        a.length > 5 ? parseLongSafe(a[5], criado) : criado);
             }
-        } catch (IOException e) {
-            System.out.println("Falha ao ler CSV: " + e.getMessage()); // Imprime erro em caso de falha na leitura
         }
     }
 
     /**
-     * Salva as tarefas da memória para o arquivo CSV.
-     * Cria o arquivo se não existir e sobrescreve o conteúdo existente.
+     * Grava um snapshot CSV a partir de cópias dos arrays de tarefas.
+     * Escreve em "arquivo.tmp", sincroniza com o disco e renomeia atomicamente sobre o destino.
+     * @param p O caminho do snapshot.
+     * @param total A quantidade de tarefas a gravar.
+     * @throws IOException Em caso de erro de I/O.
      */
-    static void salvar() {
-        Path p = Paths.get(CSV); // Obtém o caminho do arquivo CSV
-        try {
-            // Cria diretórios pai se não existirem
-            if (p.getParent() != null) Files.createDirectories(p.getParent());
-            // Abre o arquivo para escrita, criando-o se não existir e truncando o existente
-            try (BufferedWriter bw = Files.newBufferedWriter(p, StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                bw.write("id;titulo;descricao;status;criadoEm\n"); // Escreve o cabeçalho do CSV
-                // Escreve cada tarefa nos arrays para o arquivo CSV
-                for (int i = 0; i < n; i++) {
-                    bw.write(esc(ids[i]) + ";" + esc(titulos[i]) + ";" + esc(descrs[i]) + ";"
-                            + status[i] + ";" + criados[i] + "\n");
-                }
+    static void gravarSnapshot(Path p, String[] ids, String[] titulos, String[] descrs,
+                               int[] status, long[] criados, long[] desdes, int total) throws IOException {
+        // Cria diretórios pai se não existirem
+        if (p.getParent() != null) Files.createDirectories(p.getParent());
+        Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             BufferedWriter bw = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8))) {
+            bw.write("id;titulo;descricao;status;criadoEm;statusDesde\n"); // Escreve o cabeçalho do CSV
+            // Escreve cada tarefa nos arrays para o arquivo CSV
+            for (int i = 0; i < total; i++) {
+                bw.write(esc(ids[i]) + ";" + esc(titulos[i]) + ";" + esc(descrs[i]) + ";"
+                        + status[i] + ";" + criados[i] + ";" + desdes[i] + "\n");
             }
-        } catch (IOException e) {
-            System.out.println("Falha ao salvar CSV: " + e.getMessage()); // Imprime erro em caso de falha na escrita
+            bw.flush();
+            ch.force(true); // Garante que o snapshot está em disco antes de substituir o anterior
         }
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Monta o registro de log para a mudança de status de uma tarefa.
+     * @param id O ID da tarefa.
+     * @param st O novo status.
+     * @param quando Timestamp da entrada no status.
+     * @return O registro "S;id;status;quando".
+     */
+    static String registroStatus(String id, int st, long quando) {
+        return "S;" + esc(id) + ";" + st + ";" + quando;
+    }
+
+    /**
+     * Monta o registro de log para a exclusão de uma tarefa.
+     * @param id O ID da tarefa.
+     * @return O registro "D;id".
+     */
+    static String registroRemocao(String id) {
+        return "D;" + esc(id);
+    }
+
+    /**
+     * Calcula o CRC32 de um registro, em hexadecimal, para detectar escritas parciais no log.
+     * @param s O conteúdo do registro.
+     * @return O CRC32 em hexadecimal.
+     */
+    static String crc(String s) {
+        CRC32 c = new CRC32();
+        c.update(s.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(c.getValue());
+    }
+
+    /**
+     * Cópia densa das tarefas em ordem de criação, usada para gravar snapshots fora da thread da requisição.
+     */
+    record Snapshot(String[] ids, String[] titulos, String[] descrs, int[] status, long[] criados, long[] desdes,
+                    int total) {
     }
 
     /**
-     * Cria uma nova tarefa e a adiciona aos arrays em memória.
-     * @param titulo O título da nova tarefa.
-     * @param descr A descrição da nova tarefa.
-     * @return Um mapa contendo os detalhes da tarefa criada.
+     * Decodifica a query string de uma URI ("a=1&b=x%20y") em um mapa.
+     * @param raw A query string ainda codificada (pode ser null).
+     * @return Os parâmetros decodificados; vazio se não houver nenhum.
      */
-    static Map<String, Object> criar(String titulo, String descr) {
-        if (n >= MAX) throw new RuntimeException("Capacidade cheia"); // Lança exceção se a capacidade máxima for atingida
-        String id = UUID.randomUUID().toString().substring(0, 8); // Gera um ID único para a tarefa
-        // Atribui os valores da nova tarefa aos arrays
-        ids[n] = id;
-        titulos[n] = titulo;
-        descrs[n] = descr;
-        status[n] = 0; // Define o status inicial como TODO (0)
-        criados[n] = System.currentTimeMillis(); // Define o timestamp de criação
-        n++; // Incrementa o contador de tarefas
-        return mapOf(n - 1); // Retorna um mapa da tarefa recém-criada
+    static Map<String, String> parseQuery(String raw) {
+        Map<String, String> out = new LinkedHashMap<>();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String par : raw.split("&")) {
+            if (par.isEmpty()) continue;
+            int p = par.indexOf('=');
+            String k = p < 0 ? par : par.substring(0, p);
+            String v = p < 0 ? "" : par.substring(p + 1);
+            out.put(java.net.URLDecoder.decode(k, StandardCharsets.UTF_8), java.net.URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return out;
     }
 
     /**
-     * Encontra o índice de uma tarefa nos arrays em memória pelo seu ID.
-     * @param id O ID da tarefa a ser encontrada.
-     * @return O índice da tarefa se encontrada, ou -1 se não encontrada.
+     * Verifica se o cabeçalho If-None-Match contém o ETag informado (aceita listas, "*" e o prefixo W/).
+     * O ETag da versão em gzip (com SUFIXO_GZIP) também corresponde: os dois corpos têm o mesmo conteúdo,
+     * e o cliente pode ter guardado qualquer um deles.
+     * @param etag O ETag do corpo sem compressão.
      */
-    static int findIdxById(String id) {
-        for (int i = 0; i < n; i++) {
-            if (ids[i].equals(id)) return i; // Retorna o índice se o ID corresponder
+    static boolean etagCorresponde(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String t : ifNoneMatch.split(",")) {
+            t = t.trim();
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("*") || semGzip(t).equals(etag)) return true;
         }
-        return -1; // Retorna -1 se a tarefa não for encontrada
+        return false;
     }
 
     /**
-     * Cria um mapa (LinkedHashMap) com os detalhes de uma tarefa a partir de seu índice.
-     * @param i O índice da tarefa nos arrays.
-     * @return Um mapa contendo os detalhes da tarefa.
+     * @return O ETag sem o sufixo da versão em gzip ("\"x-gz\"" vira "\"x\""), ou o próprio ETag.
      */
-    static Map<String, Object> mapOf(int i) {
-        Map<String, Object> m = new LinkedHashMap<>();
-        m.put("id", ids[i]);
-        m.put("titulo", titulos[i]);
-        m.put("descricao", descrs[i]);
-        m.put("status", status[i]);
-        m.put("criadoEm", criados[i]);
-        return m;
+    static String semGzip(String etag) {
+        int n = etag.length() - SUFIXO_GZIP.length() - 1;
+        if (n > 0 && etag.endsWith("\"") && etag.startsWith(SUFIXO_GZIP, n)) return etag.substring(0, n) + "\"";
+        return etag;
     }
 
     /**
-     * Gera uma string JSON representando todas as tarefas em memória.
-     * @return Uma string JSON de um array de objetos de tarefa.
+     * Verifica se o cliente aceita respostas comprimidas com gzip. Respeita "gzip;q=0" (recusa explícita)
+     * e aceita "*" quando gzip não aparece na lista.
      */
-    static String listarJSON() {
-        StringBuilder sb = new StringBuilder("["); // Inicia o JSON como um array
-        for (int i = 0; i < n; i++) {
-            if (i > 0) sb.append(","); // Adiciona vírgula entre os objetos, exceto para o primeiro
-            sb.append(toJsonTask(mapOf(i))); // Adiciona a representação JSON de cada tarefa
+    static boolean aceitaGzip(HttpExchange ex) {
+        String ae = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        if (ae == null) return false;
+        int curinga = -1; // -1: "*" ausente; 0: recusado; 1: aceito
+        for (String t : ae.split(",")) {
+            int p = t.indexOf(';');
+            String nome = (p < 0 ? t : t.substring(0, p)).trim().toLowerCase(Locale.ROOT);
+            boolean aceito = p < 0 || !qualidadeZero(t.substring(p + 1));
+            if (nome.equals("gzip") || nome.equals("x-gzip")) return aceito;
+            if (nome.equals("*")) curinga = aceito ? 1 : 0;
         }
-        sb.append("]"); // Fecha o array JSON
-        return sb.toString();
+        return curinga == 1;
+    }
+
+    /**
+     * Verifica se os parâmetros de um item de Accept-Encoding ("q=0", "q=0.000") recusam a codificação.
+     */
+    static boolean qualidadeZero(String params) {
+        for (String p : params.split(";")) {
+            p = p.trim();
+            if (p.length() < 2 || Character.toLowerCase(p.charAt(0)) != 'q' || p.charAt(1) != '=') continue;
+            try {
+                return Double.parseDouble(p.substring(2).trim()) <= 0;
+            } catch (NumberFormatException e) {
+                return false; // Valor inválido: trata como aceito, como se o parâmetro não existisse
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Comprime bytes com gzip, no nível padrão.
+     */
+    static byte[] gzip(byte[] dados) {
+        return gzip(dados, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Comprime bytes com gzip.
+     * @param dados Os bytes originais.
+     * @param nivel O nível do Deflater: BEST_SPEED para respostas calculadas a cada requisição,
+     *              BEST_COMPRESSION para conteúdo comprimido uma única vez.
+     */
+    static byte[] gzip(byte[] dados, int nivel) {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream(dados.length / 4 + 64);
+        try (GZIPOutputStream gz = gzip(bo, nivel)) {
+            gz.write(dados);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Não acontece com ByteArrayOutputStream
+        }
+        return bo.toByteArray();
+    }
+
+    /**
+     * Abre um GZIPOutputStream com o nível de compressão informado (o construtor só oferece o padrão).
+     */
+    static GZIPOutputStream gzip(OutputStream os, int nivel) throws IOException {
+        return new GZIPOutputStream(os, 8192) {
+            {
+                def.setLevel(nivel);
+            }
+        };
     }
 
     /**
@@ -419,46 +6761,6 @@ listar();
                 "\"criadoEm\":" + t.get("criadoEm") + "}";
     }
 
-    /**
-     * Extrai o valor de uma chave de uma string JSON simples.
-     * Suporta apenas JSONs de nível único e não aninhados.
-     * @param body A string JSON de entrada.
-     * @param key A chave cujo valor deve ser extraído.
-     * @return O valor associado à chave, ou null se a chave não for encontrada.
-     */
-    static String jsonGet(String body, String key) {
-        if (body == null) return null;
-        String s = body.trim();
-        if (s.startsWith("{")) s = s.substring(1);
-        if (s.endsWith("}")) s = s.substring(0, s.length() - 1);
-
-        List<String> parts = new ArrayList<>();
-        StringBuilder cur = new StringBuilder();
-        boolean inQ = false;
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (c == '"' && (i == 0 || s.charAt(i - 1) != '\\')) inQ = !inQ;
-            if (c == ',' && !inQ) {
-                parts.add(cur.toString());
-                cur.setLength(0);
-            } else cur.append(c);
-        }
-        if (cur.length() > 0) parts.add(cur.toString());
-
-        for (String kv : parts) {
-            int i = kv.indexOf(':');
-            if (i <= 0) continue;
-            String k = kv.substring(0, i).trim();
-            String v = kv.substring(i + 1).trim();
-            k = stripQuotes(k);
-            if (key.equals(k)) {
-                v = stripQuotes(v);
-                return v;
-            }
-        }
-        return null;
-    }
-
     /**
      * Remove aspas de uma string, se presentes, e trata aspas escapadas.
      * @param s A string de entrada.
@@ -487,6 +6789,20 @@ listar();
         }
     }
 
+    /**
+     * Responde GET /metrics com as métricas no formato texto do Prometheus.
+     * @param ex O HttpExchange da requisição.
+     * @throws IOException Em caso de erro de I/O.
+     */
+    static void responderMetricas(HttpExchange ex) throws IOException {
+        if (!"GET".equals(ex.getRequestMethod())) {
+            send(ex, 405, "");
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        enviar(ex, 200, Metricas.texto().getBytes(StandardCharsets.UTF_8)); // O Prometheus pede gzip
+    }
+
     /**
      * Envia uma resposta HTTP com um código de status e corpo JSON.
      * Define o cabeçalho Content-Type como application/json.
@@ -496,8 +6812,43 @@ listar();
      * @throws IOException Em caso de erro de I/O.
      */
     static void sendJson(HttpExchange ex, int code, String body) throws IOException {
+        sendJson(ex, code, body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Envia uma resposta HTTP com um código de status e corpo JSON já codificado em UTF-8.
+     * @param ex O HttpExchange da requisição.
+     * @param code O código de status HTTP a ser enviado.
+     * @param corpo O corpo da resposta JSON.
+     * @throws IOException Em caso de erro de I/O.
+     */
+    static void sendJson(HttpExchange ex, int code, byte[] corpo) throws IOException {
         ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
-        send(ex, code, body == null ? "" : body);
+        enviar(ex, code, corpo);
+    }
+
+    /**
+     * Envia o corpo de uma resposta, comprimido com gzip quando o cliente aceita e o corpo tem pelo
+     * menos kanban.gzipMinBytes; abaixo disso o cabeçalho do gzip e o custo de CPU não compensam.
+     * O Content-Type fica a cargo de quem chama.
+     * @param ex O HttpExchange da requisição.
+     * @param code O código de status HTTP a ser enviado.
+     * @param corpo O corpo da resposta.
+     * @throws IOException Em caso de erro de I/O.
+     */
+    static void enviar(HttpExchange ex, int code, byte[] corpo) throws IOException {
+        if (corpo.length >= GZIP_MIN) {
+            Headers h = ex.getResponseHeaders();
+            h.set("Vary", "Accept-Encoding"); // Caches intermediários não podem servir a versão errada
+            if (aceitaGzip(ex)) {
+                corpo = gzip(corpo, Deflater.BEST_SPEED); // Comprimido a cada resposta: nível mais rápido
+                h.set("Content-Encoding", "gzip");
+            }
+        }
+        ex.sendResponseHeaders(code, corpo.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(corpo);
+        }
     }
 
     /**
@@ -509,11 +6860,31 @@ listar();
      */
     static String esc(String s) {
         if (s == null) return "";
-        if (s.contains(";") || s.contains("\"") || s.contains("\n"))
+        if (s.contains(";") || s.contains("\"") || s.contains("\n") || s.contains("\r"))
             return "\"" + s.replace("\"", "\"\"") + "\"";
         return s;
     }
 
+    /**
+     * Lê um registro CSV completo, que pode ocupar várias linhas quando um campo entre aspas
+     * contém quebras de linha (ver esc()). Caracteres '\r' fora de aspas são ignorados.
+     * @param r O leitor de origem.
+     * @return O registro sem a quebra de linha final, ou null no fim do arquivo.
+     * @throws IOException Em caso de erro de I/O.
+     */
+    static String lerRegistro(BufferedReader r) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean inQ = false;
+        int c;
+        while ((c = r.read()) != -1) {
+            if (c == '"') inQ = !inQ; // Aspas duplicadas ("") alternam duas vezes e mantêm o estado
+            else if (!inQ && c == '\n') return sb.toString();
+            else if (!inQ && c == '\r') continue;
+            sb.append((char) c);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
     /**
      * Divide uma linha CSV em um array de strings.
      * Lida com campos entre aspas e aspas escapadas.
@@ -547,14 +6918,27 @@ listar();
     }
 
     /**
-     * Escapa uma string para ser usada em formato JSON.
-     * Escapa barras invertidas, aspas duplas e quebras de linha.
+     * Escapa uma string para ser usada em formato JSON, em uma única passada.
+     * Escapa barras invertidas, aspas duplas e quebras de linha, descarta '\r' e escapa os demais
+     * caracteres de controle como \\uXXXX. Retorna a própria string quando não há o que escapar.
      * @param s A string a ser escapada.
      * @return A string escapada para JSON.
      */
     static String jsonEsc(String s) {
         if (s == null) return "";
-        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "");
+        int k = 0;
+        while (k < s.length() && s.charAt(k) >= 0x20 && s.charAt(k) != '"' && s.charAt(k) != '\\') k++;
+        if (k == s.length()) return s; // Nada a escapar
+        StringBuilder sb = new StringBuilder(s.length() + 16).append(s, 0, k);
+        for (; k < s.length(); k++) {
+            char c = s.charAt(k);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else if (c == '\r') continue;
+            else if (c < 0x20) sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            else sb.append(c);
+        }
+        return sb.toString();
     }
 
     /**
@@ -566,34 +6950,55 @@ listar();
         return Math.max(0, Math.min(2, s));
     }
 
+    /**
+     * Lê uma configuração da propriedade de sistema "kanban.<chave>" ou, na falta dela,
+     * da variável de ambiente KANBAN_<CHAVE> (camelCase vira MAIUSCULAS_COM_SUBLINHADO).
+     * @param chave O nome da configuração, por exemplo "maxTarefas".
+     * @param def O valor padrão.
+     * @return O valor configurado ou o padrão.
+     */
+    static String config(String chave, String def) {
+        String v = System.getProperty("kanban." + chave);
+        if (v == null) v = System.getenv("KANBAN_" + chave.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT));
+        return v == null || v.isBlank() ? def : v.trim();
+    }
+
     /**
      * Converte uma string para um inteiro de forma segura.
-     * Retorna um valor padrão se a conversão falhar.
+     * Retorna um valor padrão se a conversão falhar (ou se o número não couber em um int).
      * @param s A string a ser convertida.
      * @param def O valor padrão a ser retornado em caso de erro.
      * @return O inteiro convertido ou o valor padrão.
      */
     static int parseIntSafe(String s, int def) {
-        try {
-            return Integer.parseInt(s.trim());
-        } catch (Exception e) {
-            return def;
-        }
+        long v = parseLongSafe(s, Long.MIN_VALUE);
+        return v < Integer.MIN_VALUE || v > Integer.MAX_VALUE ? def : (int) v;
     }
 
     /**
      * Converte uma string para um long de forma segura.
-     * Retorna um valor padrão se a conversão falhar.
+     * Retorna um valor padrão se a conversão falhar; percorre os dígitos sem lançar exceções.
      * @param s A string a ser convertida.
      * @param def O valor padrão a ser retornado em caso de erro.
      * @return O long convertido ou o valor padrão.
      */
     static long parseLongSafe(String s, long def) {
-        try {
-            return Long.parseLong(s.trim());
-        } catch (Exception e) {
-            return def;
+        if (s == null) return def;
+        int i = 0, len = s.length();
+        while (i < len && s.charAt(i) <= ' ') i++;
+        while (len > i && s.charAt(len - 1) <= ' ') len--;
+        boolean neg = i < len && s.charAt(i) == '-';
+        if (i < len && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+        if (i == len) return def;
+        long v = 0;
+        for (; i < len; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return def;
+            if (v < (Long.MIN_VALUE + d) / 10) return def; // Estouro (acumula em negativo para caber MIN_VALUE)
+            v = v * 10 - d;
         }
+        if (!neg && v == Long.MIN_VALUE) return def;
+        return neg ? v : -v;
     }
 }
 